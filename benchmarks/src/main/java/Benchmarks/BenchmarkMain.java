@@ -0,0 +1,35 @@
+package Benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.ProfilerConfig;
+
+// Ponto de entrada do benchmarks.jar: aceita as mesmas opções do JMH (-h para ver todas),
+// mas sempre liga o profiler de GC (-prof gc), para toda medição trazer também a alocação por operação.
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams()
+                || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(cli);
+        if (!temProfilerDeGc(cli)) options.addProfiler(GCProfiler.class);
+        Options opcoes = options.build();
+        new Runner(opcoes).run();
+    }
+
+    private static boolean temProfilerDeGc(CommandLineOptions cli) {
+        for (ProfilerConfig profiler : cli.getProfilers()) {
+            if (profiler.getKlass().equals("gc") || profiler.getKlass().equals(GCProfiler.class.getName())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,390 @@
+package Benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Benchmark de ponta a ponta: roda o Main inteiro (leitura do arquivo, análise, compilação, execução)
+// sobre os .cpqp de um diretório, em cada motor.
+//  - frio: uma JVM nova por execução (tempo total com a partida da JVM, pico de RSS, bytes alocados)
+//  - quente: várias execuções seguidas na mesma JVM depois do aquecimento (ms por execução, execuções/s,
+//    bytes alocados por execução, taxa de alocação, pico de RSS)
+// O resultado vai para um JSON e é comparado com a baseline versionada; sai com 1 se alguma medida
+// piorar além da tolerância.
+// java -cp benchmarks/target/benchmarks.jar Benchmarks.MacroBenchmark [opções]   (a partir da raiz do projeto)
+public class MacroBenchmark {
+
+    private static final String USO =
+            "Uso: java -cp benchmarks.jar Benchmarks.MacroBenchmark [opções]\n" +
+            "  --workloads=DIR       diretório com os .cpqp (padrão: benchmarks/workloads)\n" +
+            "  --engines=tree,vm     motores medidos (padrão: tree,vm)\n" +
+            "  --mode=cold|warm|both JVM nova por execução, JVM aquecida ou as duas (padrão: both)\n" +
+            "  --cold-runs=N         execuções frias por workload e motor (padrão: 5)\n" +
+            "  --warmup=N            execuções de aquecimento antes das medidas quentes (padrão: 5)\n" +
+            "  --warm-runs=N         execuções quentes medidas (padrão: 20)\n" +
+            "  --out=ARQUIVO         resultado em JSON (padrão: benchmarks/target/macro.json)\n" +
+            "  --baseline=ARQUIVO    baseline para comparar (padrão: benchmarks/baseline.json)\n" +
+            "  --save-baseline       grava o resultado como a nova baseline em vez de comparar\n" +
+            "  --tolerance=F         piora aceita em tempo e memória residente (padrão: 0.30 = 30%)\n" +
+            "  --alloc-tolerance=F   piora aceita em bytes alocados (padrão: 0.15)\n";
+
+    // Métricas gravadas. As de alocação por execução quase não variam entre rodadas, as de tempo sim.
+    private enum Metrica {
+        COLD_WALL_MS("cold.wallMs", false, false),
+        COLD_PEAK_RSS_KB("cold.peakRssKb", false, false),
+        COLD_ALLOCATED_BYTES("cold.allocatedBytes", false, true),
+        WARM_MS_PER_RUN("warm.msPerRun", false, false),
+        WARM_RUNS_PER_SECOND("warm.runsPerSecond", true, false),
+        WARM_ALLOCATED_BYTES_PER_RUN("warm.allocatedBytesPerRun", false, true),
+        WARM_ALLOCATION_RATE_MBPS("warm.allocationRateMBps", false, false),
+        WARM_PEAK_RSS_KB("warm.peakRssKb", false, false);
+
+        final String nome;
+        final boolean maiorMelhor;
+        final boolean alocacao;
+
+        Metrica(String nome, boolean maiorMelhor, boolean alocacao) {
+            this.nome = nome;
+            this.maiorMelhor = maiorMelhor;
+            this.alocacao = alocacao;
+        }
+
+        // A taxa de alocação sobe junto com a velocidade: fica no JSON, mas não é comparada
+        boolean comparada() {
+            return this != WARM_ALLOCATION_RATE_MBPS;
+        }
+
+        static Metrica porNome(String nome) {
+            for (Metrica metrica : values()) {
+                if (metrica.nome.equals(nome)) return metrica;
+            }
+            return null;
+        }
+    }
+
+    private static final class Opcoes {
+        Path workloads = Paths.get("benchmarks", "workloads");
+        List<String> engines = Arrays.asList("tree", "vm");
+        boolean frio = true;
+        boolean quente = true;
+        int execucoesFrias = 5;
+        int aquecimento = 5;
+        int execucoesQuentes = 20;
+        Path saida = Paths.get("benchmarks", "target", "macro.json");
+        Path baseline = Paths.get("benchmarks", "baseline.json");
+        boolean salvarBaseline;
+        double tolerancia = 0.30;
+        double toleranciaAlocacao = 0.15;
+    }
+
+    // Uma linha do JSON: workload, motor, métrica e valor
+    private static final class Medida {
+        final String workload;
+        final String engine;
+        final String metrica;
+        final double valor;
+
+        Medida(String workload, String engine, String metrica, double valor) {
+            this.workload = workload;
+            this.engine = engine;
+            this.metrica = metrica;
+            this.valor = valor;
+        }
+
+        String chave() {
+            return workload + "/" + engine + "/" + metrica;
+        }
+    }
+
+    private static final Pattern LINHA_JSON = Pattern.compile(
+            "\\{\"workload\": \"([^\"]*)\", \"engine\": \"([^\"]*)\", \"metric\": \"([^\"]*)\", \"value\": ([-0-9.Ee]+)\\}");
+
+    public static void main(String[] args) throws Exception {
+        Opcoes op = opcoes(args);
+        List<Path> scripts = new ArrayList<>();
+        try (Stream<Path> arquivos = Files.list(op.workloads)) {
+            arquivos.filter(p -> p.toString().endsWith(".cpqp")).sorted().forEach(scripts::add);
+        }
+        if (scripts.isEmpty()) {
+            System.err.println("Nenhum .cpqp em " + op.workloads);
+            System.exit(2);
+        }
+
+        List<Medida> medidas = new ArrayList<>();
+        for (Path script : scripts) {
+            for (String engine : op.engines) {
+                System.err.println("medindo " + script.getFileName() + " (" + engine + ")");
+                if (op.frio) medirFrio(script, engine, op, medidas);
+                if (op.quente) medirQuente(script, engine, op, medidas);
+            }
+        }
+
+        gravar(medidas, op.saida);
+        System.out.println("Resultado salvo em: " + op.saida);
+        if (op.salvarBaseline) {
+            gravar(medidas, op.baseline);
+            System.out.println("Baseline atualizada: " + op.baseline);
+            return;
+        }
+        if (!Files.exists(op.baseline)) {
+            System.out.println("Sem baseline em " + op.baseline + " (use --save-baseline para criar)");
+            return;
+        }
+        int regressoes = comparar(medidas, ler(op.baseline), op);
+        System.out.println();
+        System.out.println(regressoes == 0 ? "Nenhuma regressão." : regressoes + " regressão(ões) além da tolerância.");
+        System.exit(regressoes == 0 ? 0 : 1);
+    }
+
+    private static Opcoes opcoes(String[] args) {
+        Opcoes op = new Opcoes();
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--workloads=")) {
+                    op.workloads = Paths.get(valor(arg));
+                } else if (arg.startsWith("--engines=")) {
+                    op.engines = Arrays.asList(valor(arg).split(","));
+                } else if (arg.startsWith("--mode=")) {
+                    String modo = valor(arg);
+                    op.frio = modo.equals("cold") || modo.equals("both");
+                    op.quente = modo.equals("warm") || modo.equals("both");
+                    if (!op.frio && !op.quente) throw new IllegalArgumentException();
+                } else if (arg.startsWith("--cold-runs=")) {
+                    op.execucoesFrias = Integer.parseInt(valor(arg));
+                } else if (arg.startsWith("--warmup=")) {
+                    op.aquecimento = Integer.parseInt(valor(arg));
+                } else if (arg.startsWith("--warm-runs=")) {
+                    op.execucoesQuentes = Integer.parseInt(valor(arg));
+                } else if (arg.startsWith("--out=")) {
+                    op.saida = Paths.get(valor(arg));
+                } else if (arg.startsWith("--baseline=")) {
+                    op.baseline = Paths.get(valor(arg));
+                } else if (arg.equals("--save-baseline")) {
+                    op.salvarBaseline = true;
+                } else if (arg.startsWith("--tolerance=")) {
+                    op.tolerancia = Double.parseDouble(valor(arg));
+                } else if (arg.startsWith("--alloc-tolerance=")) {
+                    op.toleranciaAlocacao = Double.parseDouble(valor(arg));
+                } else if (arg.equals("--help") || arg.equals("-h")) {
+                    System.out.print(USO);
+                    System.exit(0);
+                } else {
+                    throw new IllegalArgumentException();
+                }
+            } catch (IllegalArgumentException e) {
+                System.err.println("Argumento inválido: " + arg);
+                System.err.print(USO);
+                System.exit(2);
+            }
+        }
+        if (op.execucoesFrias < 1 || op.execucoesQuentes < 1 || op.aquecimento < 0) {
+            System.err.print(USO);
+            System.exit(2);
+        }
+        return op;
+    }
+
+    private static String valor(String arg) {
+        return arg.substring(arg.indexOf('=') + 1);
+    }
+
+    private static String nome(Path script) {
+        return script.getFileName().toString().replaceAll("\\.cpqp$", "");
+    }
+
+    // Entrada do LEIA: o .in de mesmo nome, se existir
+    private static byte[] entrada(Path script) throws IOException {
+        Path arquivo = Paths.get(script.toString().replaceAll("\\.cpqp$", ".in"));
+        return Files.exists(arquivo) ? Files.readAllBytes(arquivo) : new byte[0];
+    }
+
+    // --- Modo frio: uma JVM por execução, com o MacroProbe em volta do Main ---
+
+    private static void medirFrio(Path script, String engine, Opcoes op, List<Medida> medidas)
+            throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+        Path medidasFilho = Files.createTempFile("cpqp-macro", ".txt");
+        Path arquivoEntrada = Files.createTempFile("cpqp-macro", ".in");
+        Files.write(arquivoEntrada, entrada(script));
+
+        double[] tempos = new double[op.execucoesFrias];
+        double[] rss = new double[op.execucoesFrias];
+        double[] alocado = new double[op.execucoesFrias];
+        try {
+            for (int i = 0; i < op.execucoesFrias; i++) {
+                ProcessBuilder processo = new ProcessBuilder(java, "-cp", classpath, MacroProbe.class.getName(),
+                        medidasFilho.toString(), script.toString(), "--engine=" + engine);
+                processo.redirectInput(arquivoEntrada.toFile());
+                processo.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+                processo.redirectError(ProcessBuilder.Redirect.INHERIT);
+                long inicio = System.nanoTime();
+                int codigo = processo.start().waitFor();
+                tempos[i] = (System.nanoTime() - inicio) / 1e6;
+                if (codigo != 0) {
+                    throw new IllegalStateException(script + " (" + engine + ") terminou com código " + codigo);
+                }
+                Map<String, Long> filho = lerMedidasFilho(medidasFilho);
+                rss[i] = filho.getOrDefault("peakRssKb", -1L);
+                alocado[i] = filho.getOrDefault("allocatedBytes", -1L);
+            }
+        } finally {
+            Files.deleteIfExists(medidasFilho);
+            Files.deleteIfExists(arquivoEntrada);
+        }
+
+        String workload = nome(script);
+        medidas.add(new Medida(workload, engine, Metrica.COLD_WALL_MS.nome, mediana(tempos)));
+        if (mediana(rss) >= 0) medidas.add(new Medida(workload, engine, Metrica.COLD_PEAK_RSS_KB.nome, mediana(rss)));
+        if (mediana(alocado) >= 0) medidas.add(new Medida(workload, engine, Metrica.COLD_ALLOCATED_BYTES.nome, mediana(alocado)));
+    }
+
+    private static Map<String, Long> lerMedidasFilho(Path arquivo) throws IOException {
+        Map<String, Long> valores = new HashMap<>();
+        for (String linha : Files.readAllLines(arquivo, StandardCharsets.UTF_8)) {
+            int igual = linha.indexOf('=');
+            if (igual > 0) valores.put(linha.substring(0, igual), Long.parseLong(linha.substring(igual + 1)));
+        }
+        return valores;
+    }
+
+    private static double mediana(double[] valores) {
+        double[] ordenados = valores.clone();
+        Arrays.sort(ordenados);
+        int meio = ordenados.length / 2;
+        return ordenados.length % 2 == 1 ? ordenados[meio] : (ordenados[meio - 1] + ordenados[meio]) / 2;
+    }
+
+    // --- Modo quente: o Main.executar várias vezes nesta JVM ---
+
+    private static void medirQuente(Path script, String engine, Opcoes op, List<Medida> medidas) throws Exception {
+        // O Main fica no pacote padrão: só dá para chegar nele por reflexão
+        Method executar = Class.forName("Main").getMethod("executar", String[].class);
+        String[] args = {script.toString(), "--engine=" + engine};
+        byte[] entrada = entrada(script);
+
+        InputStream inOriginal = System.in;
+        PrintStream outOriginal = System.out;
+        try {
+            // A saída do programa não interessa aqui (e escrever no terminal mediria o terminal)
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            for (int i = 0; i < op.aquecimento; i++) rodar(executar, args, entrada, script, engine);
+
+            boolean rssZerado = MacroProbe.zerarPeakRss();
+            Thread thread = Thread.currentThread();
+            long alocadoAntes = MacroProbe.bytesAlocados(thread);
+            long inicio = System.nanoTime();
+            for (int i = 0; i < op.execucoesQuentes; i++) rodar(executar, args, entrada, script, engine);
+            long nanos = System.nanoTime() - inicio;
+            long alocado = MacroProbe.bytesAlocados(thread) - alocadoAntes;
+
+            String workload = nome(script);
+            double msPorExecucao = nanos / 1e6 / op.execucoesQuentes;
+            medidas.add(new Medida(workload, engine, Metrica.WARM_MS_PER_RUN.nome, msPorExecucao));
+            medidas.add(new Medida(workload, engine, Metrica.WARM_RUNS_PER_SECOND.nome, 1000 / msPorExecucao));
+            if (alocadoAntes >= 0) {
+                medidas.add(new Medida(workload, engine, Metrica.WARM_ALLOCATED_BYTES_PER_RUN.nome,
+                        (double) alocado / op.execucoesQuentes));
+                medidas.add(new Medida(workload, engine, Metrica.WARM_ALLOCATION_RATE_MBPS.nome,
+                        alocado / (1024.0 * 1024.0) / (nanos / 1e9)));
+            }
+            // Sem zerar o pico, o RSS mediria o workload mais pesado que já passou por esta JVM
+            long rss = MacroProbe.peakRssKb();
+            if (rssZerado && rss >= 0) medidas.add(new Medida(workload, engine, Metrica.WARM_PEAK_RSS_KB.nome, rss));
+        } finally {
+            System.setIn(inOriginal);
+            System.setOut(outOriginal);
+        }
+    }
+
+    private static void rodar(Method executar, String[] args, byte[] entrada, Path script, String engine) throws Exception {
+        System.setIn(new ByteArrayInputStream(entrada));
+        int codigo = (Integer) executar.invoke(null, (Object) args.clone());
+        if (codigo != 0) throw new IllegalStateException(script + " (" + engine + ") terminou com código " + codigo);
+    }
+
+    // --- JSON (uma medida por linha, para a leitura ficar trivial) ---
+
+    private static void gravar(List<Medida> medidas, Path arquivo) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"java\": \"").append(System.getProperty("java.version")).append("\",\n");
+        json.append("  \"os\": \"").append(System.getProperty("os.name")).append(' ').append(System.getProperty("os.arch")).append("\",\n");
+        json.append("  \"cpus\": ").append(Runtime.getRuntime().availableProcessors()).append(",\n");
+        json.append("  \"results\": [\n");
+        for (int i = 0; i < medidas.size(); i++) {
+            Medida medida = medidas.get(i);
+            json.append("    {\"workload\": \"").append(medida.workload)
+                .append("\", \"engine\": \"").append(medida.engine)
+                .append("\", \"metric\": \"").append(medida.metrica)
+                .append("\", \"value\": ").append(String.format(Locale.ROOT, "%.3f", medida.valor)).append('}')
+                .append(i + 1 < medidas.size() ? ",\n" : "\n");
+        }
+        json.append("  ]\n}\n");
+        Path pasta = arquivo.toAbsolutePath().getParent();
+        if (pasta != null) Files.createDirectories(pasta);
+        Files.write(arquivo, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, Medida> ler(Path arquivo) throws IOException {
+        Map<String, Medida> medidas = new HashMap<>();
+        for (String linha : Files.readAllLines(arquivo, StandardCharsets.UTF_8)) {
+            Matcher m = LINHA_JSON.matcher(linha);
+            if (m.find()) {
+                Medida medida = new Medida(m.group(1), m.group(2), m.group(3), Double.parseDouble(m.group(4)));
+                medidas.put(medida.chave(), medida);
+            }
+        }
+        return medidas;
+    }
+
+    // Tabela atual x baseline; devolve quantas medidas pioraram além da tolerância
+    private static int comparar(List<Medida> atuais, Map<String, Medida> baseline, Opcoes op) {
+        int regressoes = 0;
+        System.out.println(String.format("%-14s %-5s %-28s %14s %14s %8s  %s",
+                "workload", "motor", "métrica", "baseline", "atual", "var.", "status"));
+        for (Medida atual : atuais) {
+            Metrica metrica = Metrica.porNome(atual.metrica);
+            Medida base = baseline.get(atual.chave());
+            if (base == null) {
+                System.out.println(String.format("%-14s %-5s %-28s %14s %14.3f %8s  novo",
+                        atual.workload, atual.engine, atual.metrica, "-", atual.valor, "-"));
+                continue;
+            }
+            double variacao = base.valor == 0 ? 0 : (atual.valor - base.valor) / base.valor;
+            // Piora: cresceu uma métrica em que menor é melhor, ou caiu uma em que maior é melhor
+            double piora = metrica != null && metrica.maiorMelhor ? -variacao : variacao;
+            double tolerancia = metrica != null && metrica.alocacao ? op.toleranciaAlocacao : op.tolerancia;
+            String status;
+            if (metrica == null || !metrica.comparada()) {
+                status = "";
+            } else if (piora > tolerancia) {
+                status = "REGRESSÃO";
+                regressoes++;
+            } else if (piora < -tolerancia) {
+                status = "melhorou";
+            } else {
+                status = "ok";
+            }
+            System.out.println(String.format("%-14s %-5s %-28s %14.3f %14.3f %+7.1f%%  %s",
+                    atual.workload, atual.engine, atual.metrica, base.valor, atual.valor, variacao * 100, status));
+        }
+        return regressoes;
+    }
+}
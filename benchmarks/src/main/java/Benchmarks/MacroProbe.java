@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+// Roda numa JVM nova para o modo frio do MacroBenchmark: java Benchmarks.MacroProbe <arquivo> <args do Main>...
+// Chama o Main de verdade (que termina com System.exit) e, no gancho de desligamento, grava no arquivo
+// o pico de memória residente do processo e os bytes alocados pela thread principal.
+public class MacroProbe {
+
+    public static void main(String[] args) throws Exception {
+        Path saida = Paths.get(args[0]);
+        Thread principal = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> gravar(saida, principal)));
+
+        // O Main fica no pacote padrão: só dá para chegar nele por reflexão
+        String[] argsMain = Arrays.copyOfRange(args, 1, args.length);
+        Class.forName("Main").getMethod("main", String[].class).invoke(null, (Object) argsMain);
+    }
+
+    private static void gravar(Path saida, Thread principal) {
+        // A thread principal está parada dentro do System.exit, então ainda dá para ler o contador dela
+        long alocado = bytesAlocados(principal);
+        String texto = "peakRssKb=" + peakRssKb() + "\nallocatedBytes=" + alocado + "\n";
+        try {
+            Files.write(saida, texto.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Erro ao gravar as medidas: " + e.getMessage());
+        }
+    }
+
+    // VmHWM de /proc/self/status (só Linux); -1 se não houver
+    static long peakRssKb() {
+        try {
+            List<String> linhas = Files.readAllLines(Paths.get("/proc/self/status"));
+            for (String linha : linhas) {
+                if (linha.startsWith("VmHWM:")) {
+                    return Long.parseLong(linha.substring("VmHWM:".length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // sem /proc: medida indisponível
+        }
+        return -1;
+    }
+
+    // Zera o pico de memória residente do processo (Linux >= 4.0); false se não der
+    static boolean zerarPeakRss() {
+        try {
+            Files.write(Paths.get("/proc/self/clear_refs"), "5".getBytes(StandardCharsets.US_ASCII));
+            return true;
+        } catch (IOException | SecurityException e) {
+            return false;
+        }
+    }
+
+    // Bytes já alocados pela thread (contador da HotSpot); -1 se a JVM não tiver
+    static long bytesAlocados(Thread thread) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(thread.threadId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,87 @@
+package Benchmarks;
+
+import ByteCode.Chunk;
+import ByteCode.Compiler;
+import ByteCode.VM;
+import Lexica.Scanner;
+import Lexica.SymbolTable;
+import Lexica.Token;
+import Semantica.Interpreter;
+import Sintatica.Parser;
+import Sintatica.Stmt;
+import Utils.Diagnostics;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cada etapa do pipeline medida separadamente sobre o mesmo programa gerado: a entrada de cada
+// benchmark é a saída da etapa anterior, preparada uma vez no @Setup.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+    @Param({Workloads.ARITMETICA, Workloads.CONCATENACAO, Workloads.ANINHAMENTO, Workloads.FUNCOES})
+    public String workload;
+
+    @Param({"1000"})
+    public int tamanho;
+
+    private String source;
+    private List<Token> tokens;
+    private List<Stmt> statements;
+    private Chunk chunk;
+
+    @Setup
+    public void preparar() {
+        source = Workloads.gerar(workload, tamanho);
+        Diagnostics diagnostics = Diagnostics.silent();
+        tokens = new Scanner(source, new SymbolTable(), diagnostics).scanTokens();
+        statements = new Parser(tokens).parse();
+        chunk = diagnostics.hasErrors() ? null : new Compiler(diagnostics).compile(statements);
+        // Um workload quebrado mediria só o caminho de erro
+        if (chunk == null || !vmInterpret()) {
+            throw new IllegalStateException("Workload inválido: " + workload + " " + diagnostics.getAll());
+        }
+    }
+
+    @Benchmark
+    public List<Token> scanTokens() {
+        return new Scanner(source, new SymbolTable(), Diagnostics.silent()).scanTokens();
+    }
+
+    @Benchmark
+    public List<Stmt> parse() {
+        return new Parser(tokens).parse();
+    }
+
+    @Benchmark
+    public Chunk compile() {
+        return new Compiler(Diagnostics.silent()).compile(statements);
+    }
+
+    @Benchmark
+    public boolean vmInterpret() {
+        return new VM(Reader.nullReader(), Writer.nullWriter(), Writer.nullWriter()).interpret(chunk);
+    }
+
+    @Benchmark
+    public boolean treeInterpret() {
+        return new Interpreter().interpret(statements);
+    }
+}
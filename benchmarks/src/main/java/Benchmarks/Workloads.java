@@ -0,0 +1,81 @@
+package Benchmarks;
+
+// Programas Codes Pqp gerados para os benchmarks. 'tamanho' é a quantidade de voltas do laço principal;
+// nenhum deles imprime nada, para o benchmark medir só a linguagem.
+public final class Workloads {
+
+    public static final String ARITMETICA = "aritmetica";
+    public static final String CONCATENACAO = "concatenacao";
+    public static final String ANINHAMENTO = "aninhamento";
+    public static final String FUNCOES = "funcoes";
+
+    private static final int PROFUNDIDADE_BLOCOS = 16;
+    private static final int PROFUNDIDADE_EXPRESSAO = 32;
+
+    private Workloads() {
+    }
+
+    public static String gerar(String nome, int tamanho) {
+        switch (nome) {
+            case ARITMETICA: return aritmetica(tamanho);
+            case CONCATENACAO: return concatenacao(tamanho);
+            case ANINHAMENTO: return aninhamento(tamanho);
+            case FUNCOES: return funcoes(tamanho);
+            default: throw new IllegalArgumentException("Workload desconhecido: " + nome);
+        }
+    }
+
+    // Laço só com contas de inteiro e quebrado
+    private static String aritmetica(int tamanho) {
+        return "VAR i = 0;\n" +
+               "VAR soma = 0;\n" +
+               "VAR media = 0.5;\n" +
+               "VOLTAINFINITA (i < " + tamanho + ") {\n" +
+               "    soma = soma + i * 3 - (i / 2);\n" +
+               "    media = (media + i) / 2.0;\n" +
+               "    i = i + 1;\n" +
+               "}\n";
+    }
+
+    // Texto crescendo a cada volta (as concatenações viram Ropes)
+    private static String concatenacao(int tamanho) {
+        return "VAR i = 0;\n" +
+               "VAR texto = \"\";\n" +
+               "VOLTAINFINITA (i < " + tamanho + ") {\n" +
+               "    texto = texto + \"ab\" + i;\n" +
+               "    i = i + 1;\n" +
+               "}\n";
+    }
+
+    // SE aninhados com uma expressão bem parentizada no meio: exercita a pilha do Parser e a recursão do Compiler
+    private static String aninhamento(int tamanho) {
+        StringBuilder fonte = new StringBuilder("VAR i = 0;\nVAR x = 0;\nVOLTAINFINITA (i < " + tamanho + ") {\n");
+        for (int d = 0; d < PROFUNDIDADE_BLOCOS; d++) fonte.append("SE (i >= ").append(-d).append(") {\n");
+        fonte.append("x = ");
+        for (int d = 0; d < PROFUNDIDADE_EXPRESSAO; d++) fonte.append('(');
+        fonte.append('x');
+        for (int d = 0; d < PROFUNDIDADE_EXPRESSAO; d++) fonte.append(d % 2 == 0 ? " + 1)" : " - 1)");
+        fonte.append(";\n");
+        for (int d = 0; d < PROFUNDIDADE_BLOCOS; d++) fonte.append("}\n");
+        fonte.append("i = i + 1;\n}\n");
+        return fonte.toString();
+    }
+
+    // Chamadas curtas dentro do laço e uma recursiva no fim
+    private static String funcoes(int tamanho) {
+        return "FUNCAO dobro(n) {\n" +
+               "    RETORNA n * 2;\n" +
+               "}\n" +
+               "FUNCAO fib(n) {\n" +
+               "    SE (n < 2) RETORNA n;\n" +
+               "    RETORNA fib(n - 1) + fib(n - 2);\n" +
+               "}\n" +
+               "VAR i = 0;\n" +
+               "VAR total = 0;\n" +
+               "VOLTAINFINITA (i < " + tamanho + ") {\n" +
+               "    total = total + dobro(i);\n" +
+               "    i = i + 1;\n" +
+               "}\n" +
+               "total = total + fib(15);\n";
+    }
+}
@@ -1,36 +1,122 @@
 package ByteCode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 //Armazena uma sequência de bytecode (o programa compilado) e os valores constantes associados.
-public class Chunk {
+// Depois de montado pelo Chunk.Builder ele não muda mais: o mesmo Chunk pode ser executado
+// por várias VMs ao mesmo tempo, cada uma com o seu ExecutionContext.
+public final class Chunk {
 
-    public final List<Integer> code;
+    final int[] code;
 
-    public final List<Object> constants;
+    final Object[] constants;
 
-    public final List<Integer> lines;
+    final int[] lines;
 
-    public Chunk() {
-        this.code = new ArrayList<>();
-        this.constants = new ArrayList<>();
-        this.lines = new ArrayList<>();
+    // Nomes das variáveis globais, indexados pelo ID do símbolo (operando de OP_*_GLOBAL)
+    final String[] globalNames;
+
+    // "<script>" ou o nome da função (usado em relatórios como o do Profiler)
+    public final String name;
+
+    private Chunk(Builder builder) {
+        this.name = builder.name;
+        this.code = Arrays.copyOf(builder.code, builder.count);
+        this.lines = Arrays.copyOf(builder.lines, builder.count);
+        this.constants = builder.constants.toArray();
+        this.globalNames = builder.globalNames.toArray(new String[0]);
+    }
+
+    public int size() {
+        return code.length;
+    }
+
+    public int code(int offset) {
+        return code[offset];
     }
 
-    public void write(OpCode op, int line) {
-        // Converte o enum para um valor numérico
-        write(op.ordinal(), line);
+    public int line(int offset) {
+        return lines[offset];
     }
 
-    public void write(int byteValue, int line) {
-        this.code.add(byteValue);
-        this.lines.add(line);
+    public int constantCount() {
+        return constants.length;
     }
 
-    public int addConstant(Object value) {
-        this.constants.add(value);
-        // Retorna o índice onde foi adicionado (ex: 0, 1, 2...)
-        return this.constants.size() - 1;
+    public Object constant(int index) {
+        return constants[index];
+    }
+
+    // Quantidade de slots de global que o chunk usa (maior ID de símbolo referenciado + 1)
+    public int globalCount() {
+        return globalNames.length;
+    }
+
+    public String globalName(int slot) {
+        return globalNames[slot];
+    }
+
+    // Monta o chunk durante a compilação; build() congela o resultado
+    public static final class Builder {
+        private final String name;
+        private int[] code = new int[64];
+        private int[] lines = new int[64];
+        private int count = 0;
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> globalNames = new ArrayList<>();
+
+        public Builder() {
+            this("<script>");
+        }
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public void write(OpCode op, int line) {
+            // Converte o enum para um valor numérico
+            write(op.ordinal(), line);
+        }
+
+        public void write(int byteValue, int line) {
+            // Linha 0 = desconhecida (nós da AST sem token, como literais e laços): herda a da instrução anterior,
+            // para erros e relatórios apontarem para perto do código certo em vez da linha 0
+            if (line == 0 && count > 0) line = lines[count - 1];
+            if (count == code.length) {
+                code = Arrays.copyOf(code, count * 2);
+                lines = Arrays.copyOf(lines, count * 2);
+            }
+            code[count] = byteValue;
+            lines[count] = line;
+            count++;
+        }
+
+        // Reescreve um byte já emitido (operando de salto)
+        public void patch(int offset, int byteValue) {
+            code[offset] = byteValue;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public int addConstant(Object value) {
+            this.constants.add(value);
+            // Retorna o índice onde foi adicionado (ex: 0, 1, 2...)
+            return this.constants.size() - 1;
+        }
+
+        // Registra o nome de uma global e retorna o slot dela (o próprio ID do símbolo)
+        public int addGlobal(int symbol, String name) {
+            while (globalNames.size() <= symbol) globalNames.add(null);
+            globalNames.set(symbol, name);
+            return symbol;
+        }
+
+        public Chunk build() {
+            return new Chunk(this);
+        }
     }
-}
\ No newline at end of file
+}
@@ -3,55 +3,177 @@ package ByteCode;
 import Sintatica.Expr;
 import Sintatica.Stmt;
 import Lexica.Token;
+import Utils.Diagnostics;
+import Utils.PipelineEvents;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
-    private Chunk currentChunk;
+    private Chunk.Builder currentChunk;
+    private final ForkJoinPool pool;
+    private final Diagnostics diagnostics;
+
+    // Funções de nível superior já compiladas em paralelo, esperando a vez de entrar no chunk do script
+    private final Map<Stmt.Function, Funcao> compiledFunctions = new IdentityHashMap<>();
+
+    // Variáveis locais (só dentro de funções): ID do símbolo e profundidade do escopo de cada slot da pilha.
+    // O slot 0 é da própria função chamada; os parâmetros vêm em seguida.
+    private final boolean insideFunction;
+    private int[] localSymbols = new int[16];
+    private int[] localDepths = new int[16];
+    private int localCount = 0;
+    private int scopeDepth = 0;
+
+    // Laços e ESCOLHEAI abertos, do mais externo para o mais interno: o PAREI sai do último
+    private static final class Breakable {
+        final int localCount;                       // Locais que continuam vivas depois do PAREI
+        final List<Integer> breakJumps = new ArrayList<>(); // OP_JUMPs a corrigir para o fim do comando
+        Breakable(int localCount) { this.localCount = localCount; }
+    }
+
+    private final List<Breakable> breakables = new ArrayList<>();
 
     public Compiler() {
+        this(ForkJoinPool.commonPool(), new Diagnostics());
+    }
+
+    // Registra os erros de compilação no mesmo coletor do Scanner/Parser
+    public Compiler(Diagnostics diagnostics) {
+        this(ForkJoinPool.commonPool(), diagnostics);
+    }
+
+    // As funções de nível superior são compiladas em paralelo neste pool
+    public Compiler(ForkJoinPool pool) {
+        this(pool, new Diagnostics());
+    }
+
+    public Compiler(ForkJoinPool pool, Diagnostics diagnostics) {
         this.currentChunk = null;
+        this.pool = pool;
+        this.diagnostics = diagnostics;
+        this.insideFunction = false;
+    }
+
+    // Compilador do corpo de uma função: um chunk só dela, com parâmetros e VARs como locais
+    private Compiler(Stmt.Function function) {
+        this.currentChunk = new Chunk.Builder(function.name.lexeme);
+        this.pool = null;
+        this.diagnostics = null; // Os erros sobem como exceção até o compile() do script
+        this.insideFunction = true;
+        this.scopeDepth = 1;
+        addLocal(-1); // Slot 0: a função chamada
+        for (Token parameter : function.parameters) addLocal(parameter.symbol);
     }
 
     // Metodo auxiliar para obter a linha do token de forma segura
     private int getCurrentLine(Token token) {
-        return (token != null) ? token.line : 0;
+        return (token != null) ? token.getLine() : 0;
+    }
+
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Erro de compilação sem stack trace; compile() registra e devolve null
+    private Diagnostics.AbortException error(Token token, String message) {
+        return new Diagnostics.AbortException(getCurrentLine(token), token != null ? token.getColumn() : 0, message);
+    }
+
+    // Slot da variável global: o ID do símbolo vindo do Scanner (sem passar pelo pool de constantes)
+    private int globalSlot(Token name) {
+        return currentChunk.addGlobal(name.symbol, name.lexeme);
     }
 
     public Chunk compile(List<Stmt> statements) {
-        this.currentChunk = new Chunk();
+        PipelineEvents.CompileEvent event = new PipelineEvents.CompileEvent();
+        event.begin();
+        Chunk chunk = compileChunk(statements);
+        if (event.shouldCommit()) {
+            event.script = PipelineEvents.scriptName();
+            event.statements = statements.size();
+            event.success = chunk != null;
+            if (chunk != null) {
+                event.chunkSize = chunk.size();
+                event.constants = chunk.constantCount();
+            }
+            event.commit();
+        }
+        return chunk;
+    }
+
+    private Chunk compileChunk(List<Stmt> statements) {
+        this.currentChunk = new Chunk.Builder();
 
         try {
+            compileFunctionsInParallel(statements);
             for (Stmt stmt : statements) {
                 stmt.accept(this);
             }
             // Finaliza o bytecode
             currentChunk.write(OpCode.OP_RETURN, 0);
-            return currentChunk;
+            return currentChunk.build();
 
-        } catch (Exception e) {
-            System.err.println("Erro de compilação: " + e.getMessage());
-            e.printStackTrace();
+        } catch (Diagnostics.AbortException e) {
+            diagnostics.report(Diagnostics.Phase.COMPILACAO, e);
+            return null;
+        } catch (RuntimeException e) {
+            diagnostics.report(Diagnostics.Phase.COMPILACAO, 0, 0, e.getMessage());
             return null;
         }
     }
 
+    // Cada FUNCAO de nível superior é um trabalho independente (AST só de leitura, Compiler e Chunk próprios).
+    // Os resultados são recolhidos na ordem do fonte, e cada um só entra no pool de constantes do script
+    // quando o visitFunctionStmt sequencial chega nele: a numeração de constantes e slots é a mesma da
+    // compilação sequencial, qualquer que seja a ordem em que as threads terminam.
+    private void compileFunctionsInParallel(List<Stmt> statements) {
+        List<Stmt.Function> functions = new ArrayList<>();
+        for (Stmt stmt : statements) {
+            if (stmt instanceof Stmt.Function) functions.add((Stmt.Function) stmt);
+        }
+        if (functions.size() < 2 || pool.getParallelism() < 2) return;
+
+        List<ForkJoinTask<Funcao>> jobs = new ArrayList<>(functions.size());
+        for (Stmt.Function function : functions) {
+            jobs.add(pool.submit(() -> compileFunction(function)));
+        }
+        for (int i = 0; i < functions.size(); i++) {
+            compiledFunctions.put(functions.get(i), jobs.get(i).join());
+        }
+    }
+
+    private static Funcao compileFunction(Stmt.Function stmt) {
+        Compiler compiler = new Compiler(stmt);
+        for (Stmt statement : stmt.body) {
+            statement.accept(compiler);
+        }
+        // Sem RETORNA explícito a função devolve nulo
+        compiler.currentChunk.write(OpCode.OP_NIL, 0);
+        compiler.currentChunk.write(OpCode.OP_RETURN, 0);
+        return new Funcao(stmt.name.lexeme, stmt.parameters.size(), compiler.currentChunk.build());
+    }
+
     // --- VISITORS DE COMANDO (Stmt) ---
 
     @Override
     public Void visitInputStmt(Stmt.Input stmt) {
         int line = getCurrentLine(stmt.name);
 
-        //Emite o opcode que lê do console (a VM põe o valor na pilha)
-        currentChunk.write(OpCode.OP_INPUT, line);
+        //Emite o opcode que lê do console (a VM põe o valor na pilha; no fim da entrada salta a atribuição)
+        int eofJump = emitJump(OpCode.OP_INPUT, line);
 
-        //Define o nome da variável global onde o valor será salvo
-        int constIndex = currentChunk.addConstant(stmt.name.lexeme);
-        currentChunk.write(OpCode.OP_SET_GLOBAL, line);
-        currentChunk.write(constIndex, line);
+        //Salva o valor na variável (local ou global)
+        emitSet(stmt.name, line);
 
         //OP_SET_GLOBAL mantém o valor na pilha, então fazemos POP para limpar
         currentChunk.write(OpCode.OP_POP, line);
+        patchJump(eofJump);
 
         return null;
     }
@@ -72,8 +194,14 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             currentChunk.write(OpCode.OP_NIL, getCurrentLine(stmt.name));
         }
 
+        // Dentro de função a variável é local: o valor fica no slot da pilha onde já está
+        if (insideFunction) {
+            addLocal(stmt.name.symbol);
+            return null;
+        }
+
         // Define a variável global
-        int constIndex = currentChunk.addConstant(stmt.name.lexeme);
+        int constIndex = globalSlot(stmt.name);
         currentChunk.write(OpCode.OP_DEFINE_GLOBAL, getCurrentLine(stmt.name));
         currentChunk.write(constIndex, getCurrentLine(stmt.name));
         return null;
@@ -87,7 +215,7 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         int thenJump = emitJump(OpCode.OP_JUMP_IF_FALSE, line); // Pula se falso
         currentChunk.write(OpCode.OP_POP, line); // Remove a condição da pilha
 
-        stmt.thenBranch.accept(this); // Executa bloco IF
+        scopedBody(stmt.thenBranch); // Executa bloco IF
 
         int elseJump = emitJump(OpCode.OP_JUMP, line); // Pula o ELSE se entrou no IF
 
@@ -95,7 +223,7 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         currentChunk.write(OpCode.OP_POP, line); // Pop extra para limpeza se necessário
 
         if (stmt.elseBranch != null) {
-            stmt.elseBranch.accept(this);
+            scopedBody(stmt.elseBranch);
         }
         patchJump(elseJump);
         return null;
@@ -104,27 +232,32 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitWhileStmt(Stmt.While stmt) {
         int line = 0;
-        int loopStart = currentChunk.code.size(); // Marca o início do loop
+        int loopStart = currentChunk.size(); // Marca o início do loop
 
         stmt.condition.accept(this); // Avalia condição
 
         int exitJump = emitJump(OpCode.OP_JUMP_IF_FALSE, line); // Sai se falso
         currentChunk.write(OpCode.OP_POP, line);
 
+        Breakable loop = beginBreakable();
         stmt.body.accept(this); // Corpo do loop
 
         emitLoop(loopStart, line); // Volta ao início
 
         patchJump(exitJump);
         currentChunk.write(OpCode.OP_POP, line);
+        endBreakable(loop); // PAREI cai aqui, com a condição já fora da pilha
         return null;
     }
 
     @Override
     public Void visitBlockStmt(Stmt.Block stmt) {
+        // No script os blocos continuam definindo globais; dentro de função abrem um escopo de locais
+        if (insideFunction) scopeDepth++;
         for (Stmt statement : stmt.statements) {
             statement.accept(this);
         }
+        if (insideFunction) endScope();
         return null;
     }
 
@@ -140,11 +273,9 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitIncrementoExpr(Expr.Incremento expr) {
         int line = getCurrentLine(expr.name);
-        int constIndex = currentChunk.addConstant(expr.name.lexeme);
 
         //Carrega o valor atual da variável
-        currentChunk.write(OpCode.OP_GET_GLOBAL, line);
-        currentChunk.write(constIndex, line);
+        emitGet(expr.name, line);
 
         //Carrega o valor 1
         currentChunk.write(OpCode.OP_CONSTANT, line);
@@ -155,8 +286,7 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         currentChunk.write(OpCode.OP_ADD, line);
 
         //Salva de volta na variável
-        currentChunk.write(OpCode.OP_SET_GLOBAL, line);
-        currentChunk.write(constIndex, line);
+        emitSet(expr.name, line);
 
         return null;
     }
@@ -164,11 +294,9 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
     @Override
     public Void visitDecrementoExpr(Expr.Decremento expr) {
         int line = getCurrentLine(expr.name);
-        int constIndex = currentChunk.addConstant(expr.name.lexeme);
 
         //Carrega variável
-        currentChunk.write(OpCode.OP_GET_GLOBAL, line);
-        currentChunk.write(constIndex, line);
+        emitGet(expr.name, line);
 
         //Carrega 1
         currentChunk.write(OpCode.OP_CONSTANT, line);
@@ -179,8 +307,7 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         currentChunk.write(OpCode.OP_SUBTRACT, line);
 
         //Salva
-        currentChunk.write(OpCode.OP_SET_GLOBAL, line);
-        currentChunk.write(constIndex, line);
+        emitSet(expr.name, line);
 
         return null;
     }
@@ -196,13 +323,14 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
             case MINUS:     currentChunk.write(OpCode.OP_SUBTRACT, line); break;
             case STAR:      currentChunk.write(OpCode.OP_MULTIPLY, line); break;
             case SLASH:     currentChunk.write(OpCode.OP_DIVIDE, line); break;
+            case PERCENT:   currentChunk.write(OpCode.OP_MODULO, line); break;
             case EQUALEQUAL:currentChunk.write(OpCode.OP_EQUAL, line); break;
             case BANGEQUAL: currentChunk.write(OpCode.OP_EQUAL, line); currentChunk.write(OpCode.OP_NOT, line); break;
             case GREATER:   currentChunk.write(OpCode.OP_GREATER, line); break;
             case LESSEQUAL: currentChunk.write(OpCode.OP_GREATER, line); currentChunk.write(OpCode.OP_NOT, line); break;
             case LESS:      currentChunk.write(OpCode.OP_LESS, line); break;
             case GREATEREQUAL:currentChunk.write(OpCode.OP_LESS, line); currentChunk.write(OpCode.OP_NOT, line); break;
-            default: throw new RuntimeException("Operador binário desconhecido: " + expr.operator.type);
+            default: throw error(expr.operator, "Operador binário desconhecido: " + expr.operator.type);
         }
         return null;
     }
@@ -223,18 +351,14 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitVariableExpr(Expr.Variable expr) {
-        int constIndex = currentChunk.addConstant(expr.name.lexeme);
-        currentChunk.write(OpCode.OP_GET_GLOBAL, getCurrentLine(expr.name));
-        currentChunk.write(constIndex, getCurrentLine(expr.name));
+        emitGet(expr.name, getCurrentLine(expr.name));
         return null;
     }
 
     @Override
     public Void visitAssignExpr(Expr.Assign expr) {
         expr.value.accept(this);
-        int constIndex = currentChunk.addConstant(expr.name.lexeme);
-        currentChunk.write(OpCode.OP_SET_GLOBAL, getCurrentLine(expr.name));
-        currentChunk.write(constIndex, getCurrentLine(expr.name));
+        emitSet(expr.name, getCurrentLine(expr.name));
         return null;
     }
 
@@ -245,7 +369,7 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         switch (expr.operator.type) {
             case MINUS: currentChunk.write(OpCode.OP_NEGATE, line); break;
             case BANG:  currentChunk.write(OpCode.OP_NOT, line); break;
-            default: throw new RuntimeException("Operador unário desconhecido.");
+            default: throw error(expr.operator, "Operador unário desconhecido.");
         }
         return null;
     }
@@ -256,15 +380,186 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         return null;
     }
 
-    // Stubs para funcionalidades ainda não implementadas no compilador mas existentes na interface
-    @Override public Void visitCallExpr(Expr.Call expr) { return null; }
-    @Override public Void visitFunctionStmt(Stmt.Function stmt) { return null; }
-    @Override public Void visitReturnStmt(Stmt.Return stmt) { return null; }
-    @Override public Void visitBreakStmt(Stmt.Break stmt) {
-        // Break requer gestão de loop stack, simplificado aqui
+    @Override
+    public Void visitCallExpr(Expr.Call expr) {
+        int line = getCurrentLine(expr.paren);
+        expr.callee.accept(this);
+        for (Expr argument : expr.arguments) {
+            argument.accept(this);
+        }
+        currentChunk.write(OpCode.OP_CALL, line);
+        currentChunk.write(expr.arguments.size(), line);
+        return null;
+    }
+
+    @Override
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        // Sem upvalues, uma função aninhada não enxergaria as locais de quem a declara
+        if (insideFunction) {
+            throw error(stmt.name, "Funções aninhadas ainda não são suportadas na VM: " + stmt.name.lexeme);
+        }
+        Funcao function = compiledFunctions.remove(stmt);
+        if (function == null) function = compileFunction(stmt);
+        link(function);
+
+        int line = getCurrentLine(stmt.name);
+        int constIndex = currentChunk.addConstant(function);
+        currentChunk.write(OpCode.OP_CONSTANT, line);
+        currentChunk.write(constIndex, line);
+        int slot = globalSlot(stmt.name);
+        currentChunk.write(OpCode.OP_DEFINE_GLOBAL, line);
+        currentChunk.write(slot, line);
         return null;
     }
-    @Override public Void visitSwitchStmt(Stmt.Switch stmt) { return null; }
+
+    @Override
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        int line = getCurrentLine(stmt.keyword);
+        if (stmt.value != null) {
+            stmt.value.accept(this);
+        } else {
+            currentChunk.write(OpCode.OP_NIL, line);
+        }
+        currentChunk.write(OpCode.OP_RETURN, line);
+        return null;
+    }
+
+    @Override
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        if (breakables.isEmpty()) throw error(null, "PAREI fora de um laço ou ESCOLHEAI.");
+        Breakable target = breakables.get(breakables.size() - 1);
+        // Tira da pilha as locais dos blocos que o salto abandona (o endScope deles fica para trás)
+        for (int i = localCount; i > target.localCount; i--) {
+            currentChunk.write(OpCode.OP_POP, 0);
+        }
+        target.breakJumps.add(emitJump(OpCode.OP_JUMP, 0));
+        return null;
+    }
+
+    // Mesma semântica do Interpreter: os valores dos CASOs são testados em ordem até o primeiro igual,
+    // a partir dele os corpos seguintes também rodam (sem PAREI) e o PADRAO só roda se nenhum CASO bateu.
+    // O valor testado fica numa local sem nome durante o comando todo.
+    @Override
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        int line = 0;
+        stmt.expr.accept(this);
+        scopeDepth++;
+        int slot = localCount;
+        addLocal(-1);
+        Breakable escolha = beginBreakable();
+
+        int nextTest = -1;    // JUMP_IF_FALSE do teste anterior (vai para o próximo teste)
+        int fallThrough = -1; // JUMP do fim do corpo anterior (cai no próximo corpo)
+        if (stmt.cases != null) {
+            for (Stmt.Case caso : stmt.cases) {
+                if (nextTest >= 0) {
+                    patchJump(nextTest);
+                    currentChunk.write(OpCode.OP_POP, line); // Resultado do teste que falhou
+                }
+                currentChunk.write(OpCode.OP_GET_LOCAL, line);
+                currentChunk.write(slot, line);
+                caso.value.accept(this);
+                currentChunk.write(OpCode.OP_EQUAL, line);
+                nextTest = emitJump(OpCode.OP_JUMP_IF_FALSE, line);
+                currentChunk.write(OpCode.OP_POP, line);
+                if (fallThrough >= 0) patchJump(fallThrough);
+                scopedBody(caso.stmt);
+                fallThrough = emitJump(OpCode.OP_JUMP, line);
+            }
+        }
+        // Nenhum CASO bateu
+        if (nextTest >= 0) {
+            patchJump(nextTest);
+            currentChunk.write(OpCode.OP_POP, line);
+        }
+        if (stmt.defaultCase != null) scopedBody(stmt.defaultCase.stmt);
+        // Depois do último corpo executado o PADRAO é pulado
+        if (fallThrough >= 0) patchJump(fallThrough);
+
+        endBreakable(escolha);
+        endScope(); // Tira o valor testado da pilha
+        return null;
+    }
+
+    // Cada corpo (ramo do SE, CASO) tem escopo próprio: um VAR solto num ramo pulado não pode ficar
+    // contado na pilha
+    private void scopedBody(Stmt body) {
+        scopeDepth++;
+        body.accept(this);
+        endScope();
+    }
+
+    private Breakable beginBreakable() {
+        Breakable breakable = new Breakable(localCount);
+        breakables.add(breakable);
+        return breakable;
+    }
+
+    // Os PAREI do comando saltam para a posição atual
+    private void endBreakable(Breakable breakable) {
+        breakables.remove(breakables.size() - 1);
+        for (int jump : breakable.breakJumps) patchJump(jump);
+    }
+
+    // --- VARIÁVEIS (locais e globais) ---
+
+    // As globais de uma função usam os mesmos IDs de símbolo; o script registra os nomes para a VM
+    private void link(Funcao function) {
+        Chunk chunk = function.chunk;
+        for (int symbol = 0; symbol < chunk.globalCount(); symbol++) {
+            if (chunk.globalName(symbol) != null) currentChunk.addGlobal(symbol, chunk.globalName(symbol));
+        }
+    }
+
+    private void addLocal(int symbol) {
+        if (localCount == 256) throw error(null, "Variáveis locais demais na função.");
+        if (localCount == localSymbols.length) {
+            localSymbols = Arrays.copyOf(localSymbols, localCount * 2);
+            localDepths = Arrays.copyOf(localDepths, localCount * 2);
+        }
+        localSymbols[localCount] = symbol;
+        localDepths[localCount] = scopeDepth;
+        localCount++;
+    }
+
+    // Fecha o escopo do bloco: as locais declaradas nele saem da pilha
+    private void endScope() {
+        scopeDepth--;
+        while (localCount > 0 && localDepths[localCount - 1] > scopeDepth) {
+            currentChunk.write(OpCode.OP_POP, 0);
+            localCount--;
+        }
+    }
+
+    // Slot da local mais interna com esse nome, ou -1 se for global
+    private int resolveLocal(Token name) {
+        for (int i = localCount - 1; i > 0; i--) {
+            if (localSymbols[i] == name.symbol) return i;
+        }
+        return -1;
+    }
+
+    private void emitGet(Token name, int line) {
+        int local = resolveLocal(name);
+        if (local >= 0) {
+            currentChunk.write(OpCode.OP_GET_LOCAL, line);
+            currentChunk.write(local, line);
+        } else {
+            currentChunk.write(OpCode.OP_GET_GLOBAL, line);
+            currentChunk.write(globalSlot(name), line);
+        }
+    }
+
+    private void emitSet(Token name, int line) {
+        int local = resolveLocal(name);
+        if (local >= 0) {
+            currentChunk.write(OpCode.OP_SET_LOCAL, line);
+            currentChunk.write(local, line);
+        } else {
+            currentChunk.write(OpCode.OP_SET_GLOBAL, line);
+            currentChunk.write(globalSlot(name), line);
+        }
+    }
 
     // --- MÉTODOS AUXILIARES DE JUMP (Controle de Fluxo) ---
 
@@ -272,23 +567,23 @@ public class Compiler implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
         currentChunk.write(jumpOpcode, line);
         currentChunk.write(0xFF, line); // Placeholder High byte
         currentChunk.write(0xFF, line); // Placeholder Low byte
-        return currentChunk.code.size() - 2;
+        return currentChunk.size() - 2;
     }
 
     private void patchJump(int offset) {
-        int jump = currentChunk.code.size() - offset - 2;
+        int jump = currentChunk.size() - offset - 2;
         if (jump > 65535) {
-            throw new RuntimeException("Salto muito longo para o bytecode.");
+            throw error(null, "Salto muito longo para o bytecode.");
         }
-        currentChunk.code.set(offset, (jump >> 8) & 0xFF);
-        currentChunk.code.set(offset + 1, jump & 0xFF);
+        currentChunk.patch(offset, (jump >> 8) & 0xFF);
+        currentChunk.patch(offset + 1, jump & 0xFF);
     }
 
     private void emitLoop(int loopStart, int line) {
         currentChunk.write(OpCode.OP_LOOP, line);
-        int offset = currentChunk.code.size() - loopStart + 2;
+        int offset = currentChunk.size() - loopStart + 2;
         if (offset > 65535) {
-            throw new RuntimeException("Loop muito longo.");
+            throw error(null, "Loop muito longo.");
         }
         currentChunk.write((offset >> 8) & 0xFF, line);
         currentChunk.write(offset & 0xFF, line);
@@ -6,10 +6,18 @@ public class Debug {
         System.out.println("== " + name + " ==");
 
         // Percorre todas as instruções
-        for (int offset = 0; offset < chunk.code.size();) {
+        for (int offset = 0; offset < chunk.size();) {
             // disassembleInstruction retorna o novo offset (pula os operandos se houver)
             offset = disassembleInstruction(chunk, offset);
         }
+
+        // Cada função tem o próprio chunk: desmonta depois do chunk que a declara
+        for (int i = 0; i < chunk.constantCount(); i++) {
+            Object constant = chunk.constant(i);
+            if (constant instanceof Funcao) {
+                disassembleChunk(((Funcao) constant).chunk, constant.toString());
+            }
+        }
     }
 
     // Desmonta uma única instrução
@@ -17,13 +25,13 @@ public class Debug {
         System.out.printf("%04d ", offset); // Imprime o índice (ex: 0000, 0001)
 
         // Imprime a linha do código fonte (ou | se for a mesma da anterior)
-        if (offset > 0 && chunk.lines.get(offset).equals(chunk.lines.get(offset - 1))) {
+        if (offset > 0 && chunk.line(offset) == chunk.line(offset - 1)) {
             System.out.print("   | ");
         } else {
-            System.out.printf("%4d ", chunk.lines.get(offset));
+            System.out.printf("%4d ", chunk.line(offset));
         }
 
-        int instruction = chunk.code.get(offset);
+        int instruction = chunk.code(offset);
         if (instruction >= OpCode.values().length) {
             System.out.println("Opcode desconhecido " + instruction);
             return offset + 1;
@@ -31,10 +39,12 @@ public class Debug {
         OpCode op = OpCode.values()[instruction];
 
         return switch (op) {
-            case OP_RETURN, OP_POP, OP_NIL, OP_TRUE, OP_FALSE, OP_NEGATE, OP_ADD, OP_SUBTRACT, OP_MULTIPLY, OP_DIVIDE,
-                 OP_NOT, OP_EQUAL, OP_GREATER, OP_LESS, OP_PRINT, OP_INPUT -> simpleInstruction(op, offset);
-            case OP_CONSTANT, OP_DEFINE_GLOBAL, OP_GET_GLOBAL, OP_SET_GLOBAL -> constantInstruction(op, chunk, offset);
-            case OP_JUMP, OP_JUMP_IF_FALSE -> jumpInstruction(op, 1, chunk, offset);
+            case OP_RETURN, OP_POP, OP_NIL, OP_TRUE, OP_FALSE, OP_NEGATE, OP_ADD, OP_SUBTRACT, OP_MULTIPLY, OP_DIVIDE, OP_MODULO,
+                 OP_NOT, OP_EQUAL, OP_GREATER, OP_LESS, OP_PRINT -> simpleInstruction(op, offset);
+            case OP_CONSTANT -> constantInstruction(op, chunk, offset);
+            case OP_DEFINE_GLOBAL, OP_GET_GLOBAL, OP_SET_GLOBAL -> globalInstruction(op, chunk, offset);
+            case OP_GET_LOCAL, OP_SET_LOCAL, OP_CALL -> byteInstruction(op, chunk, offset);
+            case OP_JUMP, OP_JUMP_IF_FALSE, OP_INPUT -> jumpInstruction(op, 1, chunk, offset);
             case OP_LOOP -> jumpInstruction(op, -1, chunk, offset);
             default -> {
                 System.out.println("Opcode desconhecido " + op);
@@ -51,16 +61,32 @@ public class Debug {
 
     // Instruções com constantes (Opcode + Índice da Constante)
     private static int constantInstruction(OpCode op, Chunk chunk, int offset) {
-        int constantIndex = chunk.code.get(offset + 1);
+        int constantIndex = chunk.code(offset + 1);
         System.out.printf("%-16s %4d '", op, constantIndex);
-        System.out.print(chunk.constants.get(constantIndex));
+        System.out.print(chunk.constant(constantIndex));
+        System.out.println("'");
+        return offset + 2;
+    }
+
+    // Instruções com globais (Opcode + ID do símbolo)
+    private static int globalInstruction(OpCode op, Chunk chunk, int offset) {
+        int slot = chunk.code(offset + 1);
+        System.out.printf("%-16s %4d '", op, slot);
+        System.out.print(chunk.globalName(slot));
         System.out.println("'");
         return offset + 2;
     }
 
+    // Instruções com um operando de 1 byte (slot da local ou número de argumentos)
+    private static int byteInstruction(OpCode op, Chunk chunk, int offset) {
+        int operand = chunk.code(offset + 1);
+        System.out.printf("%-16s %4d\n", op, operand);
+        return offset + 2;
+    }
+
     // Instruções de pulo (Opcode + 2 bytes de offset)
     private static int jumpInstruction(OpCode op, int sign, Chunk chunk, int offset) {
-        int jump = (chunk.code.get(offset + 1) << 8) | chunk.code.get(offset + 2);
+        int jump = (chunk.code(offset + 1) << 8) | chunk.code(offset + 2);
         System.out.printf("%-16s %4d -> %d\n", op, offset,
                 offset + 3 + sign * jump);
         return offset + 3;
@@ -0,0 +1,199 @@
+package ByteCode;
+
+import Utils.ExecutionBudget;
+import Utils.OutputSink;
+
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Scanner;
+
+// Todo o estado de uma execução: pilha de valores, quadros de chamada, globais e os canais de E/S.
+// O Chunk é compartilhado e só de leitura; cada execução concorrente usa o seu próprio contexto.
+public final class ExecutionContext {
+
+    static final Object UNDEFINED = new Object(); // Slot de global ainda não definido
+
+    // Pilha de valores (array simples: sem o sincronismo do java.util.Stack a cada push/pop)
+    Object[] stack;
+    int sp = 0;
+
+    // Quadros de quem chamou a função atual, em arrays paralelos (chamar não aloca nada)
+    Chunk[] frameChunks = new Chunk[16];
+    int[] frameIps = new int[16];
+    int[] frameBases = new int[16];
+    int frameCount = 0;
+
+    Object[] globals;                 // Indexado pelo ID do símbolo; a capacidade pode ser maior que o uso
+    int globalsUsed = 0;              // Slots [0, globalsUsed) estão em uso nesta execução
+
+    private Reader input;             // null = System.in
+    private Scanner consoleInput;     // Criado no primeiro LEAI
+    OutputSink out;                   // Saída do ESCREVEAI, bufferizada
+    PrintWriter err;
+    private OutputSink ownOut;        // Canal reaproveitado entre execuções quando a saída é um Writer qualquer
+
+    ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+    final ExecutionBudget.Meter meter = new ExecutionBudget.Meter(); // Reiniciado a cada execução
+
+    Probe probe;                      // Instrumentação (só com VM.PROBES)
+
+    String lastError;                 // Último erro de execução (null se terminou bem)
+    Object result;                    // Valor devolvido pela última VM.invoke()
+
+    // Saída no System.out por um canal só deste contexto
+    public ExecutionContext() {
+        this(null, OutputSink.stdout(), new PrintWriter(System.err, true));
+    }
+
+    // Entrada e saídas próprias da execução (ex: a requisição atendida, o ScriptContext do ScriptEngine)
+    public ExecutionContext(Reader input, Writer out, Writer err) {
+        this(256, 0);
+        bind(input, out, err);
+    }
+
+    // Contexto pré-dimensionado, ainda sem E/S (usado pelo VMPool)
+    ExecutionContext(int stackSize, int globalsSize) {
+        this.stack = new Object[Math.max(stackSize, 16)];
+        this.globals = new Object[globalsSize];
+    }
+
+    // Liga o contexto aos canais de E/S de uma execução
+    void bind(Reader input, Writer out, Writer err) {
+        this.input = input;
+        this.consoleInput = null;
+        if (out instanceof OutputSink) {
+            this.out = (OutputSink) out;
+        } else {
+            if (ownOut == null) ownOut = new OutputSink(out);
+            else ownOut.redirect(out);
+            this.out = ownOut;
+        }
+        this.err = err instanceof PrintWriter ? (PrintWriter) err : new PrintWriter(err);
+    }
+
+    // Deixa o contexto pronto para outra execução, em O(globais usadas + altura da pilha + quadros):
+    // só os trechos usados são limpos, a capacidade dos arrays é mantida
+    void reset() {
+        Arrays.fill(globals, 0, globalsUsed, null);
+        globalsUsed = 0;
+        truncate(0);
+        Arrays.fill(frameChunks, 0, frameCount, null);
+        frameCount = 0;
+        budget = ExecutionBudget.UNLIMITED;
+        probe = null;
+        lastError = null;
+        result = null;
+        input = null;
+        consoleInput = null;
+        out = null;
+        err = null;
+        if (ownOut != null) ownOut.redirect((Writer) null);
+    }
+
+    // Limite de passos e/ou de tempo das próximas execuções neste contexto
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    public ExecutionBudget getBudget() {
+        return budget;
+    }
+
+    // Troca a saída do ESCREVEAI (ex: um arquivo, um buffer em memória)
+    public void setOutput(OutputSink out) {
+        this.out = out;
+    }
+
+    public OutputSink getOutput() {
+        return out;
+    }
+
+    // Liga um observador às próximas execuções neste contexto (null desliga)
+    public void setProbe(Probe probe) {
+        if (probe != null && !VM.PROBES) {
+            throw new IllegalStateException("Instrumentação da VM desligada: rode a JVM com -D" + VM.PROBES_PROPERTY + "=true");
+        }
+        this.probe = probe;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Object getResult() {
+        return result;
+    }
+
+    // --- Globais vistas pelo hospedeiro (slot = ID do símbolo na SymbolTable usada na compilação) ---
+
+    public void setGlobal(int slot, Object value) {
+        ensureGlobals(slot + 1);
+        globals[slot] = value;
+    }
+
+    public boolean isDefined(int slot) {
+        return slot < globalsUsed && globals[slot] != UNDEFINED;
+    }
+
+    public Object getGlobal(int slot) {
+        return isDefined(slot) ? globals[slot] : null;
+    }
+
+    public int globalCount() {
+        return globalsUsed;
+    }
+
+    // --- Usado pela VM ---
+
+    // Garante um slot de global para cada símbolo que o chunk referencia
+    void ensureGlobals(int size) {
+        if (globalsUsed >= size) return;
+        if (globals.length < size) globals = Arrays.copyOf(globals, Math.max(size, globals.length * 2));
+        Arrays.fill(globals, globalsUsed, size, UNDEFINED);
+        globalsUsed = size;
+    }
+
+    void push(Object value) {
+        if (sp == stack.length) stack = Arrays.copyOf(stack, sp * 2);
+        stack[sp++] = value;
+    }
+
+    Object pop() {
+        Object value = stack[--sp];
+        stack[sp] = null; // Não segura referências para o GC
+        return value;
+    }
+
+    Object peek() {
+        return stack[sp - 1];
+    }
+
+    // Descarta a pilha até a altura indicada
+    void truncate(int height) {
+        Arrays.fill(stack, height, sp, null);
+        sp = height;
+    }
+
+    void pushFrame(Chunk chunk, int ip, int base) {
+        if (frameCount == frameChunks.length) {
+            int size = frameCount * 2;
+            frameChunks = Arrays.copyOf(frameChunks, size);
+            frameIps = Arrays.copyOf(frameIps, size);
+            frameBases = Arrays.copyOf(frameBases, size);
+        }
+        frameChunks[frameCount] = chunk;
+        frameIps[frameCount] = ip;
+        frameBases[frameCount] = base;
+        frameCount++;
+    }
+
+    // Próxima linha da entrada, ou null no fim dela
+    String readLine() {
+        if (consoleInput == null) {
+            consoleInput = input != null ? new Scanner(input) : new Scanner(System.in);
+        }
+        return consoleInput.hasNextLine() ? consoleInput.nextLine() : null;
+    }
+}
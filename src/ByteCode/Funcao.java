@@ -0,0 +1,19 @@
+package ByteCode;
+
+// Função compilada: cada FUNCAO vira um Chunk próprio, guardado como constante no chunk de quem a declara
+public class Funcao {
+    public final String name;
+    public final int arity;
+    public final Chunk chunk;
+
+    public Funcao(String name, int arity, Chunk chunk) {
+        this.name = name;
+        this.arity = arity;
+        this.chunk = chunk;
+    }
+
+    @Override
+    public String toString() {
+        return "<funcao " + name + ">";
+    }
+}
@@ -2,7 +2,7 @@ package ByteCode;
 
 public enum OpCode {
     // --- Opcodes Essenciais ---
-    OP_RETURN,      // Retorna (finaliza a execução)
+    OP_RETURN,      // Retorna da função atual (no script principal, finaliza a execução)
     OP_CONSTANT,    // Carrega um valor constante (ex: 5, "ola", true)
     OP_POP,         // Descarta o valor no topo da pilha
 
@@ -12,6 +12,7 @@ public enum OpCode {
     OP_SUBTRACT,    // -
     OP_MULTIPLY,    // *
     OP_DIVIDE,      // /
+    OP_MODULO,      // %
 
     // --- Opcodes Lógicos ---
     OP_NIL,         // Valor nulo
@@ -34,7 +35,10 @@ public enum OpCode {
     OP_JUMP_IF_FALSE,   // Salta se o topo da pilha for falso (usado no 'SE')
     OP_LOOP,            // Salto para trás (usado em laços 'VOLTAINFINITA')
 
+    // --- Opcodes de Funções ---
+    OP_CALL,            // Chama a função abaixo dos argumentos (operando: número de argumentos)
+
     // --- Opcodes de Ação ---
     OP_PRINT,           // Imprime o valor no topo da pilha
-    OP_INPUT            // NOVO: Lê uma entrada do utilizador
+    OP_INPUT            // Lê uma entrada do utilizador; no fim da entrada salta a atribuição (operando: salto)
 }
\ No newline at end of file
@@ -0,0 +1,153 @@
+package ByteCode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Histograma de opcodes executados: quantas vezes cada OpCode rodou, os pares de opcodes vizinhos
+// (candidatos a superinstrução) e, opcionalmente, o tempo gasto em cada um.
+// É um Probe (precisa de -Dcpqp.vm.probes=true); sem ele o laço da VM não muda. Um histograma por
+// contexto: os contadores não são sincronizados.
+public class OpcodeHistogram implements Probe {
+
+    private static final OpCode[] OPCODES = OpCode.values();
+    private static final int TOP_PAIRS = 20;
+
+    private final boolean timing;
+    private final long[] counts = new long[OPCODES.length];
+    private final long[] pairs = new long[OPCODES.length * OPCODES.length]; // [anterior * N + atual]
+    private final long[] nanos = new long[OPCODES.length];
+    private int previous = -1;
+    private long last;
+
+    private Writer textOut;  // Relatórios escritos ao fim de cada execução (null = não escreve)
+    private Writer jsonOut;
+
+    // timing: mede também o tempo por opcode (System.nanoTime() a cada instrução, bem mais caro)
+    public OpcodeHistogram(boolean timing) {
+        this.timing = timing;
+    }
+
+    // Escreve os relatórios (texto e/ou JSON) quando a execução termina
+    public OpcodeHistogram dumpOnFinish(Writer text, Writer json) {
+        this.textOut = text;
+        this.jsonOut = json;
+        return this;
+    }
+
+    @Override
+    public void beforeInstruction(ExecutionContext ctx, Chunk chunk, int offset) {
+        int op = chunk.code[offset];
+        counts[op]++;
+        if (previous >= 0) pairs[previous * OPCODES.length + op]++;
+        if (timing) {
+            // O tempo desde a instrução anterior é dela
+            long now = System.nanoTime();
+            if (previous >= 0) nanos[previous] += now - last;
+            last = now;
+        }
+        previous = op;
+    }
+
+    @Override
+    public void executionFinished(ExecutionContext ctx) {
+        if (timing && previous >= 0) nanos[previous] += System.nanoTime() - last;
+        previous = -1;
+        try {
+            if (textOut != null) writeText(textOut);
+            if (jsonOut != null) writeJson(jsonOut);
+        } catch (IOException e) {
+            ctx.err.println("Erro ao escrever o histograma de opcodes: " + e.getMessage());
+        }
+    }
+
+    public long count(OpCode op) {
+        return counts[op.ordinal()];
+    }
+
+    public long total() {
+        long total = 0;
+        for (long count : counts) total += count;
+        return total;
+    }
+
+    public void writeText(Writer out) throws IOException {
+        long total = total();
+        long totalNanos = 0;
+        for (long n : nanos) totalNanos += n;
+
+        out.write(String.format(Locale.ROOT, "== Opcodes executados: %d ==%n", total));
+        if (timing) {
+            out.write(String.format(Locale.ROOT, "%-18s %12s %7s %12s %9s %7s%n", "opcode", "execuções", "%", "ns total", "ns/exec", "%tempo"));
+        } else {
+            out.write(String.format(Locale.ROOT, "%-18s %12s %7s%n", "opcode", "execuções", "%"));
+        }
+        for (int op : sortedOpcodes()) {
+            if (timing) {
+                out.write(String.format(Locale.ROOT, "%-18s %12d %6.2f%% %12d %9.1f %6.2f%%%n", OPCODES[op], counts[op],
+                        percent(counts[op], total), nanos[op], (double) nanos[op] / counts[op], percent(nanos[op], totalNanos)));
+            } else {
+                out.write(String.format(Locale.ROOT, "%-18s %12d %6.2f%%%n", OPCODES[op], counts[op], percent(counts[op], total)));
+            }
+        }
+        if (timing) out.write("(o tempo inclui o custo da própria medição, ~1 System.nanoTime() por instrução)\n");
+
+        out.write(String.format(Locale.ROOT, "%n== Pares mais frequentes (anterior -> atual) ==%n"));
+        long totalPairs = Math.max(total - 1, 0);
+        for (int pair : topPairs()) {
+            out.write(String.format(Locale.ROOT, "%-18s -> %-18s %12d %6.2f%%%n", OPCODES[pair / OPCODES.length],
+                    OPCODES[pair % OPCODES.length], pairs[pair], percent(pairs[pair], totalPairs)));
+        }
+        out.flush();
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"total\":").append(total()).append(",\"timing\":").append(timing).append(",\"opcodes\":[");
+        boolean first = true;
+        for (int op : sortedOpcodes()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"op\":\"").append(OPCODES[op]).append("\",\"count\":").append(counts[op]);
+            if (timing) json.append(",\"nanos\":").append(nanos[op]);
+            json.append('}');
+        }
+        json.append("],\"pairs\":[");
+        first = true;
+        for (int pair : topPairs()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append("{\"first\":\"").append(OPCODES[pair / OPCODES.length])
+                .append("\",\"second\":\"").append(OPCODES[pair % OPCODES.length])
+                .append("\",\"count\":").append(pairs[pair]).append('}');
+        }
+        json.append("]}\n");
+        out.write(json.toString());
+        out.flush();
+    }
+
+    // Opcodes que rodaram pelo menos uma vez, do mais executado para o menos
+    private List<Integer> sortedOpcodes() {
+        List<Integer> ops = new ArrayList<>();
+        for (int op = 0; op < counts.length; op++) {
+            if (counts[op] > 0) ops.add(op);
+        }
+        ops.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        return ops;
+    }
+
+    private List<Integer> topPairs() {
+        List<Integer> found = new ArrayList<>();
+        for (int pair = 0; pair < pairs.length; pair++) {
+            if (pairs[pair] > 0) found.add(pair);
+        }
+        found.sort((a, b) -> Long.compare(pairs[b], pairs[a]));
+        return found.size() > TOP_PAIRS ? found.subList(0, TOP_PAIRS) : found;
+    }
+
+    private static double percent(long part, long whole) {
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+}
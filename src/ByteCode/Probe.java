@@ -0,0 +1,32 @@
+package ByteCode;
+
+// Observador da execução na VM (profiler, histograma de opcodes...), ligado por contexto.
+// Só é consultado quando a JVM sobe com -Dcpqp.vm.probes=true; sem isso o teste some do laço da VM.
+public interface Probe {
+
+    // Chamado antes de cada instrução; offset é a posição do opcode em chunk
+    void beforeInstruction(ExecutionContext ctx, Chunk chunk, int offset);
+
+    // Chamado quando VM.execute/VM.invoke termina (com ou sem erro)
+    default void executionFinished(ExecutionContext ctx) {
+    }
+
+    // Um contexto tem um só Probe: para usar dois ao mesmo tempo (ex: profiler + histograma)
+    static Probe both(Probe first, Probe second) {
+        if (first == null) return second;
+        if (second == null) return first;
+        return new Probe() {
+            @Override
+            public void beforeInstruction(ExecutionContext ctx, Chunk chunk, int offset) {
+                first.beforeInstruction(ctx, chunk, offset);
+                second.beforeInstruction(ctx, chunk, offset);
+            }
+
+            @Override
+            public void executionFinished(ExecutionContext ctx) {
+                first.executionFinished(ctx);
+                second.executionFinished(ctx);
+            }
+        };
+    }
+}
@@ -0,0 +1,141 @@
+package ByteCode;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.LockSupport;
+
+// Profiler por amostragem para scripts na VM. Uma thread acorda a cada intervalo e marca que uma amostra
+// é devida; antes da instrução seguinte a VM registra onde está: função e linha do fonte, mais a pilha de
+// chamadas. O resultado sai como relatório por linha e como pilhas "colapsadas" (uma por linha,
+// "quadro;quadro;... contagem"), o formato que o flamegraph.pl e o speedscope leem.
+// O custo fora das amostras é um teste de campo volatile por instrução; o intervalo controla o resto.
+public class Profiler implements Probe, AutoCloseable {
+
+    private final long intervalNanos;
+    private final Thread ticker;
+    private volatile boolean pending;
+    private volatile boolean running = true;
+
+    // Agregados (protegidos por this; só mexidos na hora da amostra)
+    private final Map<String, Long> stacks = new HashMap<>();
+    private final Map<Integer, LineStats> lines = new HashMap<>();
+    private long samples;
+
+    private static final class LineStats {
+        final int line;
+        final String function;
+        long self;   // Amostras com a linha no topo da pilha
+        long total;  // Amostras com a linha em qualquer ponto da pilha
+
+        LineStats(int line, String function) {
+            this.line = line;
+            this.function = function;
+        }
+    }
+
+    public Profiler() {
+        this(1000);
+    }
+
+    public Profiler(long intervalMicros) {
+        if (intervalMicros <= 0) throw new IllegalArgumentException("Intervalo inválido: " + intervalMicros);
+        this.intervalNanos = intervalMicros * 1000;
+        this.ticker = new Thread(this::tick, "cpqp-profiler");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    private void tick() {
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            pending = true;
+        }
+    }
+
+    @Override
+    public void beforeInstruction(ExecutionContext ctx, Chunk chunk, int offset) {
+        if (!pending) return;
+        pending = false;
+        sample(ctx, chunk, offset);
+    }
+
+    private synchronized void sample(ExecutionContext ctx, Chunk chunk, int offset) {
+        samples++;
+        // Quadros de quem chamou (do mais externo para o mais interno): a linha é a da instrução OP_CALL,
+        // que fica logo antes do ip de retorno salvo
+        StringBuilder stack = new StringBuilder();
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < ctx.frameCount; i++) {
+            Chunk caller = ctx.frameChunks[i];
+            int line = caller.line(ctx.frameIps[i] - 1);
+            frame(stack, caller, line);
+            stack.append(';');
+            if (seen.add(line)) stats(line, caller).total++;
+        }
+        int line = chunk.line(offset);
+        frame(stack, chunk, line);
+        LineStats top = stats(line, chunk);
+        top.self++;
+        if (seen.add(line)) top.total++;
+        stacks.merge(stack.toString(), 1L, Long::sum);
+    }
+
+    private static void frame(StringBuilder stack, Chunk chunk, int line) {
+        stack.append(chunk.name).append(':').append(line);
+    }
+
+    private LineStats stats(int line, Chunk chunk) {
+        return lines.computeIfAbsent(line, l -> new LineStats(l, chunk.name));
+    }
+
+    public synchronized long getSamples() {
+        return samples;
+    }
+
+    // Relatório plano por linha, da mais quente para a mais fria. Com o fonte, mostra o texto de cada linha.
+    public synchronized void writeReport(Writer out, String source) throws IOException {
+        String[] text = source != null ? source.split("\r?\n", -1) : new String[0];
+        List<LineStats> sorted = new ArrayList<>(lines.values());
+        sorted.sort((a, b) -> a.self != b.self ? Long.compare(b.self, a.self) : Long.compare(b.total, a.total));
+
+        out.write(String.format("== Perfil: %d amostras a cada %d µs ==%n", samples, intervalNanos / 1000));
+        out.write(String.format("%8s %7s %8s %7s %6s  %-16s %s%n",
+                "próprio", "%", "total", "%", "linha", "função", "código"));
+        for (LineStats s : sorted) {
+            String code = (s.line >= 1 && s.line <= text.length) ? text[s.line - 1].trim() : "";
+            out.write(String.format("%8d %6.1f%% %8d %6.1f%% %6d  %-16s %s%n",
+                    s.self, percent(s.self), s.total, percent(s.total), s.line, s.function, code));
+        }
+        out.flush();
+    }
+
+    // Pilhas colapsadas: "<script>:12;fib:3;fib:4 57"
+    public synchronized void writeCollapsed(Writer out) throws IOException {
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(stacks.entrySet());
+        sorted.sort(Map.Entry.comparingByKey());
+        for (Map.Entry<String, Long> entry : sorted) {
+            out.write(entry.getKey());
+            out.write(' ');
+            out.write(Long.toString(entry.getValue()));
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private double percent(long count) {
+        return samples == 0 ? 0 : 100.0 * count / samples;
+    }
+
+    // Para a thread de amostragem (os dados coletados continuam disponíveis)
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+}
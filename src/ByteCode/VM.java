@@ -1,125 +1,288 @@
 package ByteCode;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
-import java.util.Scanner;
+import Utils.ExecutionBudget;
+import Utils.PipelineEvents;
+import Utils.Rope;
 
+import java.io.Reader;
+import java.io.Writer;
+
+// Executa bytecode. A VM em si não guarda estado de execução: pilha, quadros, globais e E/S ficam
+// no ExecutionContext, e o Chunk é imutável. Várias execuções do mesmo Chunk podem rodar em paralelo,
+// cada uma com o seu contexto (ver VMExecutor).
 public class VM {
 
-    private Chunk chunk;
-    private int ip; // Instruction Pointer
-    private Stack<Object> stack;
-    private Map<String, Object> globals;
-    private final Scanner consoleInput;
+    private static final int MAX_FRAMES = 10000;
+
+    // OpCode.values() clona o array a cada chamada; o laço principal usa esta cópia
+    private static final OpCode[] OPCODES = OpCode.values();
+
+    // Ganchos de instrumentação (Probe). Desligados, o JIT trata PROBES como constante e elimina o teste
+    // do laço principal: a execução normal não paga nada por eles.
+    public static final String PROBES_PROPERTY = "cpqp.vm.probes";
+    public static final boolean PROBES = Boolean.getBoolean(PROBES_PROPERTY);
+
+    private final ExecutionContext context;
 
     public VM() {
-        this.stack = new Stack<>();
-        this.globals = new HashMap<>();
-        this.consoleInput = new Scanner(System.in);
+        this(new ExecutionContext());
+    }
+
+    // VM embutida: entrada e saídas vêm do hospedeiro
+    public VM(Reader input, Writer out, Writer err) {
+        this(new ExecutionContext(input, out, err));
+    }
+
+    public VM(ExecutionContext context) {
+        this.context = context;
+    }
+
+    public ExecutionContext getContext() {
+        return context;
     }
 
     // Metodo principal de execução
-    public boolean interpret(Chunk chunk) {
-        this.chunk = chunk;
-        this.ip = 0;
+    public boolean interpret(Chunk script) {
+        return execute(script, context);
+    }
+
+    public boolean invoke(Funcao function, Object[] args) {
+        return invoke(function, args, context);
+    }
+
+    // Executa o script inteiro no contexto dado
+    public static boolean execute(Chunk script, ExecutionContext ctx) {
+        PipelineEvents.ExecutionEvent event = new PipelineEvents.ExecutionEvent();
+        event.begin();
+        // Uma execução anterior que parou com erro pode ter deixado valores na pilha
+        ctx.truncate(0);
+        ctx.frameCount = 0;
+        ctx.meter.start(ctx.budget);
+        boolean ok = run(script, 0, ctx);
+        if (PROBES && ctx.probe != null) ctx.probe.executionFinished(ctx);
+        commit(event, script, ctx, ok);
+        return ok;
+    }
+
+    // Chama uma função do script a partir do Java; o valor devolvido fica em ctx.getResult()
+    public static boolean invoke(Funcao function, Object[] args, ExecutionContext ctx) {
+        ctx.result = null;
+        if (args.length != function.arity) {
+            ctx.lastError = "Esperado " + function.arity + " argumentos, mas obteve " + args.length + ".";
+            ctx.out.flush();
+            ctx.err.println(ctx.lastError);
+            ctx.err.flush();
+            return false;
+        }
+        PipelineEvents.ExecutionEvent event = new PipelineEvents.ExecutionEvent();
+        event.begin();
+        ctx.truncate(0);
+        ctx.frameCount = 0;
+        ctx.meter.start(ctx.budget);
+        ctx.push(function);
+        for (Object arg : args) ctx.push(arg);
+        // A função roda como o quadro de baixo: o OP_RETURN dela encerra run() com o resultado no topo
+        boolean ok = run(function.chunk, 0, ctx);
+        if (PROBES && ctx.probe != null) ctx.probe.executionFinished(ctx);
+        commit(event, function.chunk, ctx, ok);
+        if (!ok) return false;
+        ctx.result = ctx.sp > 0 ? ctx.pop() : null;
+        return true;
+    }
+
+    // Evento do JFR da execução; desligado, shouldCommit() é false e nada mais é lido
+    private static void commit(PipelineEvents.ExecutionEvent event, Chunk chunk, ExecutionContext ctx, boolean ok) {
+        if (event.shouldCommit()) {
+            event.script = PipelineEvents.scriptName();
+            event.engine = "vm";
+            event.chunk = chunk.name;
+            event.chunkSize = chunk.size();
+            event.steps = ctx.meter.used();
+            event.allocatedBytes = ctx.meter.allocated;
+            event.success = ok;
+            event.commit();
+        }
+    }
 
+    private static boolean run(Chunk chunk, int base, ExecutionContext ctx) {
+        ctx.lastError = null;
+        // Estado do quadro atual em variáveis locais; vai para o contexto só ao chamar uma função
+        int[] code;
+        int ip = 0;
+        // Orçamento conferido a cada volta de laço e a cada chamada (sem limite: nunca sai do caminho rápido)
+        ExecutionBudget.Meter meter = ctx.meter;
+        Probe probe = PROBES ? ctx.probe : null;
         try {
+            code = chunk.code;
+            ctx.ensureGlobals(chunk.globalNames.length);
             while (true) {
-                if (ip >= chunk.code.size()) return true;
+                if (ip >= code.length) return true;
+                if (PROBES && probe != null) probe.beforeInstruction(ctx, chunk, ip);
 
-                int instruction = chunk.code.get(ip++);
-                OpCode op = OpCode.values()[instruction];
+                OpCode op = OPCODES[code[ip++]];
 
                 switch (op) {
                     case OP_RETURN: {
-                        System.out.println("VM: Execução finalizada.");
-                        return true;
+                        if (ctx.frameCount == 0) return true; // Fim do script
+                        // Descarta a janela da função (ela, argumentos e locais) e deixa só o resultado
+                        Object result = ctx.pop();
+                        ctx.truncate(base);
+                        ctx.push(result);
+                        int caller = --ctx.frameCount;
+                        chunk = ctx.frameChunks[caller];
+                        ctx.frameChunks[caller] = null;
+                        code = chunk.code;
+                        ip = ctx.frameIps[caller];
+                        base = ctx.frameBases[caller];
+                        break;
                     }
 
                     // CORREÇÃO: Implementação do OP_CONSTANT que faltava em versões antigas
                     case OP_CONSTANT: {
-                        int constIndex = chunk.code.get(ip++);
-                        Object constant = chunk.constants.get(constIndex);
-                        stack.push(constant);
+                        int constIndex = code[ip++];
+                        ctx.push(chunk.constants[constIndex]);
                         break;
                     }
 
                     case OP_POP: {
-                        if (!stack.isEmpty()) stack.pop();
+                        if (ctx.sp > 0) ctx.pop();
                         break;
                     }
 
                     // --- Tipos Literais ---
-                    case OP_NIL:   stack.push(null); break;
-                    case OP_TRUE:  stack.push(true); break;
-                    case OP_FALSE: stack.push(false); break;
+                    case OP_NIL:   ctx.push(null); break;
+                    case OP_TRUE:  ctx.push(true); break;
+                    case OP_FALSE: ctx.push(false); break;
 
                     // --- Aritmética Unária ---
                     case OP_NEGATE: {
-                        Object value = stack.pop();
-                        if (value instanceof Double) stack.push(-(Double) value);
-                        else if (value instanceof Integer) stack.push(-(Integer) value);
-                        else runtimeError("Operando deve ser um número.");
+                        Object value = ctx.pop();
+                        meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
+                        if (value instanceof Double) ctx.push(-(Double) value);
+                        else if (value instanceof Integer) ctx.push(-(Integer) value);
+                        else {
+                            runtimeError(ctx, chunk, ip, "Operando deve ser um número.");
+                            return false;
+                        }
                         break;
                     }
 
-                    // --- Aritmética Binária ---
-                    case OP_ADD:      binaryOp("+"); break;
-                    case OP_SUBTRACT: binaryOp("-"); break;
-                    case OP_MULTIPLY: binaryOp("*"); break;
-                    case OP_DIVIDE:   binaryOp("/"); break;
+                    // --- Aritmética Binária e Comparação ---
+                    case OP_ADD:
+                    case OP_SUBTRACT:
+                    case OP_MULTIPLY:
+                    case OP_DIVIDE:
+                    case OP_MODULO:
+                    case OP_GREATER:
+                    case OP_LESS: {
+                        String error = binaryOp(op, ctx);
+                        if (error != null) {
+                            runtimeError(ctx, chunk, ip, error);
+                            return false;
+                        }
+                        break;
+                    }
 
-                    // --- Lógica e Comparação ---
-                    case OP_NOT: stack.push(!isTruthy(stack.pop())); break;
+                    // --- Lógica ---
+                    case OP_NOT: ctx.push(!isTruthy(ctx.pop())); break;
                     case OP_EQUAL: {
-                        Object b = stack.pop();
-                        Object a = stack.pop();
-                        stack.push(isEqual(a, b));
+                        Object b = ctx.pop();
+                        Object a = ctx.pop();
+                        ctx.push(isEqual(a, b));
                         break;
                     }
-                    case OP_GREATER: binaryOp(">"); break;
-                    case OP_LESS:    binaryOp("<"); break;
 
                     // --- Variáveis ---
                     case OP_DEFINE_GLOBAL: {
-                        int constIndex = chunk.code.get(ip++);
-                        String name = (String) chunk.constants.get(constIndex);
-                        globals.put(name, stack.pop());
+                        int slot = code[ip++];
+                        ctx.globals[slot] = ctx.pop();
                         break;
                     }
                     case OP_GET_GLOBAL: {
-                        int constIndex = chunk.code.get(ip++);
-                        String name = (String) chunk.constants.get(constIndex);
-                        if (!globals.containsKey(name)) {
-                            runtimeError("Variável indefinida '" + name + "'.");
+                        int slot = code[ip++];
+                        Object value = ctx.globals[slot];
+                        if (value == ExecutionContext.UNDEFINED) {
+                            runtimeError(ctx, chunk, ip, "Variável indefinida '" + chunk.globalNames[slot] + "'.");
                             return false;
                         }
-                        stack.push(globals.get(name));
+                        ctx.push(value);
                         break;
                     }
                     case OP_SET_GLOBAL: {
-                        int constIndex = chunk.code.get(ip++);
-                        String name = (String) chunk.constants.get(constIndex);
-                        if (!globals.containsKey(name)) {
-                            runtimeError("Variável indefinida '" + name + "'.");
+                        int slot = code[ip++];
+                        if (ctx.globals[slot] == ExecutionContext.UNDEFINED) {
+                            runtimeError(ctx, chunk, ip, "Variável indefinida '" + chunk.globalNames[slot] + "'.");
                             return false;
                         }
                         // OP_SET mantém o valor na pilha para permitir atribuições encadeadas (a = b = 1)
-                        globals.put(name, stack.peek());
+                        ctx.globals[slot] = ctx.peek();
+                        break;
+                    }
+
+                    case OP_GET_LOCAL: {
+                        int slot = code[ip++];
+                        ctx.push(ctx.stack[base + slot]);
+                        break;
+                    }
+                    case OP_SET_LOCAL: {
+                        int slot = code[ip++];
+                        ctx.stack[base + slot] = ctx.peek();
+                        break;
+                    }
+
+                    // --- Funções ---
+                    case OP_CALL: {
+                        // Entra na função que está abaixo dos argumentos na pilha
+                        int argCount = code[ip++];
+                        Object callee = ctx.stack[ctx.sp - argCount - 1];
+                        if (!(callee instanceof Funcao)) {
+                            runtimeError(ctx, chunk, ip, "Só é possível chamar funções.");
+                            return false;
+                        }
+                        Funcao function = (Funcao) callee;
+                        if (argCount != function.arity) {
+                            runtimeError(ctx, chunk, ip, "Esperado " + function.arity + " argumentos, mas obteve " + argCount + ".");
+                            return false;
+                        }
+                        if (!meter.consume()) {
+                            runtimeError(ctx, chunk, ip, meter.message());
+                            return false;
+                        }
+                        if (ctx.frameCount == MAX_FRAMES) {
+                            runtimeError(ctx, chunk, ip, "Estouro da pilha de chamadas.");
+                            return false;
+                        }
+                        ctx.ensureGlobals(function.chunk.globalNames.length);
+                        ctx.pushFrame(chunk, ip, base);
+                        chunk = function.chunk;
+                        code = chunk.code;
+                        ip = 0;
+                        base = ctx.sp - argCount - 1;
                         break;
                     }
 
                     // --- Entrada e Saída ---
                     case OP_PRINT: {
-                        System.out.println(stringify(stack.pop()));
+                        ctx.out.writeLine(ctx.pop());
                         break;
                     }
 
                     // CORREÇÃO: Implementação do OP_INPUT (LEIA)
                     case OP_INPUT: {
-                        System.out.print("> "); // Prompt
-                        String line = consoleInput.nextLine();
+                        ctx.out.write("> "); // Prompt (e ponto de descarga: quem responde vê a saída até aqui)
+                        ctx.out.flush();
+                        int offset = (code[ip] << 8) | code[ip + 1];
+                        ip += 2;
+                        String line = ctx.readLine();
+                        if (line == null) {
+                            // Fim da entrada: a variável fica como estava, igual ao Interpreter
+                            ip += offset;
+                            break;
+                        }
+                        if (!meter.allocate(2L * line.length() + 40)) {
+                            runtimeError(ctx, chunk, ip, meter.message());
+                            return false;
+                        }
                         Object val;
                         // Tenta converter para Inteiro ou Double, senão String
                         try {
@@ -131,113 +294,151 @@ public class VM {
                                 val = line;
                             }
                         }
-                        stack.push(val);
+                        ctx.push(val);
                         break;
                     }
 
                     // --- Controle de Fluxo ---
                     case OP_JUMP_IF_FALSE: {
-                        int offset = readShort();
-                        if (!isTruthy(stack.peek())) {
+                        int offset = (code[ip] << 8) | code[ip + 1];
+                        ip += 2;
+                        if (!isTruthy(ctx.peek())) {
                             ip += offset;
                         }
                         break;
                     }
                     case OP_JUMP: {
-                        int offset = readShort();
-                        ip += offset;
+                        int offset = (code[ip] << 8) | code[ip + 1];
+                        ip += 2 + offset;
                         break;
                     }
                     case OP_LOOP: {
-                        int offset = readShort();
-                        ip -= offset;
+                        // Cobra antes de saltar (como o Interpreter, depois do corpo): o erro aponta a
+                        // última instrução do corpo, não a condição lá no início do laço
+                        if (!meter.consume()) {
+                            runtimeError(ctx, chunk, ip - 1, meter.message());
+                            return false;
+                        }
+                        int offset = (code[ip] << 8) | code[ip + 1];
+                        ip += 2 - offset;
                         break;
                     }
 
                     default:
-                        runtimeError("Opcode desconhecido: " + op);
+                        runtimeError(ctx, chunk, ip, "Opcode desconhecido: " + op);
                         return false;
                 }
             }
         } catch (Exception e) {
-            System.err.println("Erro fatal na VM: " + e.getMessage());
-            e.printStackTrace();
+            ctx.lastError = "Erro fatal na VM: " + e.getMessage();
+            ctx.out.flush();
+            ctx.err.println(ctx.lastError);
+            e.printStackTrace(ctx.err);
             return false;
+        } finally {
+            ctx.out.flush();
+            ctx.err.flush();
         }
     }
 
     // --- Auxiliares ---
 
-    private void binaryOp(String op) {
-        Object b = stack.pop();
-        Object a = stack.pop();
+    // Retorna a mensagem de erro se os operandos não servem para o operador, se o divisor é zero ou se a
+    // cota de memória estourou (a pilha já perdeu os dois); null se deu certo
+    private static String binaryOp(OpCode op, ExecutionContext ctx) {
+        Object b = ctx.pop();
+        Object a = ctx.pop();
 
-        if (op.equals("+") && (a instanceof String || b instanceof String)) {
-            stack.push(stringify(a) + stringify(b));
-            return;
+        if (op == OpCode.OP_ADD && (Rope.isString(a) || Rope.isString(b))) {
+            // Conta o texto antes de criá-lo: um '+' em laço não chega a estourar o heap
+            CharSequence left = text(a);
+            CharSequence right = text(b);
+            if (!ctx.meter.allocate(Rope.concatBytes(left, right))) return ctx.meter.message();
+            ctx.push(Rope.concat(left, right));
+            return null;
         }
 
-        if (!(a instanceof Number) || !(b instanceof Number)) {
-            runtimeError("Operandos inválidos para " + op);
-            return;
-        }
+        if (!(a instanceof Number) || !(b instanceof Number)) return "Operandos inválidos para " + symbol(op);
+        // Como no Interpreter: dividir por zero é erro também com quebrados (nada de Infinity/NaN)
+        if ((op == OpCode.OP_DIVIDE || op == OpCode.OP_MODULO) && ((Number) b).doubleValue() == 0) return "Divisão por zero.";
+        if (op != OpCode.OP_GREATER && op != OpCode.OP_LESS) ctx.meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
 
         // Opera com Double se houver algum float, senão Integer
         if (a instanceof Double || b instanceof Double) {
             double da = ((Number) a).doubleValue();
             double db = ((Number) b).doubleValue();
             switch (op) {
-                case "+": stack.push(da + db); break;
-                case "-": stack.push(da - db); break;
-                case "*": stack.push(da * db); break;
-                case "/": stack.push(da / db); break;
-                case ">": stack.push(da > db); break;
-                case "<": stack.push(da < db); break;
+                case OP_ADD:      ctx.push(da + db); break;
+                case OP_SUBTRACT: ctx.push(da - db); break;
+                case OP_MULTIPLY: ctx.push(da * db); break;
+                case OP_DIVIDE:   ctx.push(da / db); break;
+                case OP_MODULO:   ctx.push(da % db); break;
+                case OP_GREATER:  ctx.push(da > db); break;
+                case OP_LESS:     ctx.push(da < db); break;
+                default: return "Operandos inválidos para " + symbol(op);
             }
         } else {
             int ia = (int) a;
             int ib = (int) b;
             switch (op) {
-                case "+": stack.push(ia + ib); break;
-                case "-": stack.push(ia - ib); break;
-                case "*": stack.push(ia * ib); break;
-                case "/": stack.push(ia / ib); break;
-                case ">": stack.push(ia > ib); break;
-                case "<": stack.push(ia < ib); break;
+                case OP_ADD:      ctx.push(ia + ib); break;
+                case OP_SUBTRACT: ctx.push(ia - ib); break;
+                case OP_MULTIPLY: ctx.push(ia * ib); break;
+                case OP_DIVIDE:   ctx.push(ia / ib); break;
+                case OP_MODULO:   ctx.push(ia % ib); break;
+                case OP_GREATER:  ctx.push(ia > ib); break;
+                case OP_LESS:     ctx.push(ia < ib); break;
+                default: return "Operandos inválidos para " + symbol(op);
             }
         }
+        return null;
     }
 
-    private int readShort() {
-        int high = chunk.code.get(ip++);
-        int low = chunk.code.get(ip++);
-        return (high << 8) | low;
+    private static String symbol(OpCode op) {
+        switch (op) {
+            case OP_ADD:      return "+";
+            case OP_SUBTRACT: return "-";
+            case OP_MULTIPLY: return "*";
+            case OP_DIVIDE:   return "/";
+            case OP_MODULO:   return "%";
+            case OP_GREATER:  return ">";
+            case OP_LESS:     return "<";
+            default:          return op.toString();
+        }
     }
 
-    private boolean isTruthy(Object object) {
+    private static boolean isTruthy(Object object) {
         if (object == null) return false;
         if (object instanceof Boolean) return (boolean) object;
         return true;
     }
 
-    private boolean isEqual(Object a, Object b) {
+    private static boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
+        if (Rope.isString(a) && Rope.isString(b)) return Rope.textEquals(a, b);
         return a.equals(b);
     }
 
-    private String stringify(Object object) {
+    // Operando de '+' como texto: Ropes seguem sem achatar para a concatenação continuar linear
+    private static CharSequence text(Object object) {
+        if (object instanceof Rope) return (Rope) object;
+        return stringify(object);
+    }
+
+    private static String stringify(Object object) {
         if (object == null) return "nulo";
         if (object instanceof Double) {
             String text = object.toString();
             if (text.endsWith(".0")) return text.substring(0, text.length() - 2);
         }
-        if (object instanceof Boolean) return (boolean) object ? "verdadeiro" : "falso";
         return object.toString();
     }
 
-    private void runtimeError(String message) {
-        int line = chunk.lines.get(ip - 1);
-        System.err.println(message + " [linha " + line + "]");
+    private static void runtimeError(ExecutionContext ctx, Chunk chunk, int ip, String message) {
+        int line = chunk.lines[ip - 1];
+        ctx.lastError = message + " [linha " + line + "]";
+        ctx.out.flush(); // A saída que veio antes do erro aparece antes dele
+        ctx.err.println(ctx.lastError);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,68 @@
+package ByteCode;
+
+import Utils.ExecutionBudget;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+// Roda muitas execuções de scripts ao mesmo tempo, uma thread virtual por execução.
+// Os Chunks são compartilhados (imutáveis); cada execução recebe o seu ExecutionContext com E/S própria.
+// Uma execução bloqueada em LEAI só prende a thread virtual dela, e o trabalho de CPU se espalha pelos
+// núcleos através das threads carregadoras da JVM.
+public class VMExecutor implements AutoCloseable {
+
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore permits; // null = sem limite de execuções simultâneas
+    private final ExecutionBudget budget; // Aplicado aos contextos que não têm orçamento próprio
+
+    public VMExecutor() {
+        this(0);
+    }
+
+    // maxConcurrent limita quantas execuções rodam ao mesmo tempo (0 = sem limite);
+    // as demais esperam a vez sem ocupar thread de sistema
+    public VMExecutor(int maxConcurrent) {
+        this(maxConcurrent, ExecutionBudget.UNLIMITED);
+    }
+
+    // Com um orçamento padrão, um VOLTAINFINITA sem saída não prende uma thread para sempre
+    public VMExecutor(int maxConcurrent, ExecutionBudget budget) {
+        this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent) : null;
+        this.budget = budget;
+    }
+
+    // O futuro termina com o próprio contexto: getLastError() diz se a execução falhou,
+    // e as globais ficam disponíveis para o chamador
+    public CompletableFuture<ExecutionContext> submit(Chunk chunk, ExecutionContext context) {
+        if (context.getBudget().isUnlimited()) context.setBudget(budget);
+        CompletableFuture<ExecutionContext> done = new CompletableFuture<>();
+        threads.execute(() -> {
+            try {
+                if (permits != null) permits.acquire();
+                try {
+                    VM.execute(chunk, context);
+                } finally {
+                    if (permits != null) permits.release();
+                }
+                done.complete(context);
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            }
+        });
+        return done;
+    }
+
+    public CompletableFuture<ExecutionContext> submit(Chunk chunk, Reader input, Writer out, Writer err) {
+        return submit(chunk, new ExecutionContext(input, out, err));
+    }
+
+    // Espera as execuções em andamento terminarem
+    @Override
+    public void close() {
+        threads.close();
+    }
+}
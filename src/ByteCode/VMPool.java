@@ -0,0 +1,156 @@
+package ByteCode;
+
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Pool de contextos de execução já dimensionados, para milhares de execuções curtas por segundo
+// sem alocar pilha, quadros e globais a cada vez. Na devolução o contexto é limpo só no trecho que
+// a execução usou. Contextos que cresceram demais (ex: recursão funda) são descartados em vez de
+// voltarem ao pool segurando memória.
+// Os contextos ociosos ficam num array de slots atômicos: pegar e devolver é um getAndSet/compareAndSet,
+// sem lock e sem alocar nó de fila (uma fila com lock custava mais que criar um contexto novo).
+public class VMPool {
+
+    private final AtomicReferenceArray<ExecutionContext> idle;
+    private final int stackSize;
+    private final int globalsSize;
+
+    // Métricas
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder misses = new LongAdder();   // Pool vazio: contexto criado na hora
+    private final LongAdder discards = new LongAdder(); // Devolvidos mas não reaproveitados
+    private final LongAdder sampledBorrows = new LongAdder();
+    private final LongAdder borrowNanos = new LongAdder();   // Soma das latências amostradas
+    private final AtomicLong maxBorrowNanos = new AtomicLong();
+
+    public VMPool(int capacity) {
+        this(capacity, 256, 256);
+    }
+
+    // capacity contextos ficam guardados (todos criados aqui), cada um com pilha e globais pré-alocadas
+    public VMPool(int capacity, int stackSize, int globalsSize) {
+        this.idle = new AtomicReferenceArray<>(capacity);
+        this.stackSize = stackSize;
+        this.globalsSize = globalsSize;
+        for (int i = 0; i < capacity; i++) {
+            idle.set(i, new ExecutionContext(stackSize, globalsSize));
+        }
+    }
+
+    public ExecutionContext borrow(Reader input, Writer out, Writer err) {
+        borrows.increment();
+        // Cronometrar todo empréstimo custaria quase tanto quanto o próprio empréstimo: mede 1 em 64
+        boolean sample = ThreadLocalRandom.current().nextInt(64) == 0;
+        long start = sample ? System.nanoTime() : 0;
+
+        ExecutionContext context = take();
+        if (context == null) {
+            misses.increment();
+            context = new ExecutionContext(stackSize, globalsSize);
+        }
+        context.bind(input, out, err);
+
+        if (sample) {
+            long elapsed = System.nanoTime() - start;
+            sampledBorrows.increment();
+            borrowNanos.add(elapsed);
+            maxBorrowNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        return context;
+    }
+
+    // Cada thread começa a procura num slot diferente para não disputarem sempre o mesmo
+    private ExecutionContext take() {
+        int n = idle.length();
+        int start = (int) (Thread.currentThread().threadId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            if (idle.get(slot) != null) {
+                ExecutionContext context = idle.getAndSet(slot, null);
+                if (context != null) return context;
+            }
+        }
+        return null;
+    }
+
+    private boolean put(ExecutionContext context) {
+        int n = idle.length();
+        int start = (int) (Thread.currentThread().threadId() % n);
+        for (int i = 0; i < n; i++) {
+            int slot = (start + i) % n;
+            if (idle.get(slot) == null && idle.compareAndSet(slot, null, context)) return true;
+        }
+        return false;
+    }
+
+    private int idleCount() {
+        int count = 0;
+        for (int i = 0; i < idle.length(); i++) {
+            if (idle.get(i) != null) count++;
+        }
+        return count;
+    }
+
+    public void release(ExecutionContext context) {
+        // Arrays muito maiores que o tamanho inicial viram lixo em vez de ficarem presos no pool
+        if (context.stack.length > stackSize * 16) {
+            discards.increment();
+            return;
+        }
+        context.reset();
+        if (!put(context)) discards.increment(); // Pool já cheio (contexto criado num miss)
+    }
+
+    // Executa o chunk num contexto do pool e devolve o contexto em seguida.
+    // Retorna a mensagem de erro da execução, ou null se ela terminou bem.
+    public String execute(Chunk chunk, Reader input, Writer out, Writer err) {
+        ExecutionContext context = borrow(input, out, err);
+        try {
+            VM.execute(chunk, context);
+            return context.getLastError();
+        } finally {
+            release(context);
+        }
+    }
+
+    public Stats stats() {
+        return new Stats(idleCount(), borrows.sum(), misses.sum(), discards.sum(),
+                sampledBorrows.sum(), borrowNanos.sum(), maxBorrowNanos.get());
+    }
+
+    public static final class Stats {
+        public final int idle;
+        public final long borrows;
+        public final long misses;
+        public final long discards;
+        public final long sampledBorrows;  // Empréstimos cronometrados
+        public final long sampledBorrowNanos;
+        public final long maxBorrowNanos;  // Maior latência entre os amostrados
+
+        Stats(int idle, long borrows, long misses, long discards,
+              long sampledBorrows, long sampledBorrowNanos, long maxBorrowNanos) {
+            this.idle = idle;
+            this.borrows = borrows;
+            this.misses = misses;
+            this.discards = discards;
+            this.sampledBorrows = sampledBorrows;
+            this.sampledBorrowNanos = sampledBorrowNanos;
+            this.maxBorrowNanos = maxBorrowNanos;
+        }
+
+        public double averageBorrowNanos() {
+            return sampledBorrows == 0 ? 0 : (double) sampledBorrowNanos / sampledBorrows;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("VMPool[ociosos=%d, empréstimos=%d, misses=%d, descartes=%d, " +
+                    "empréstimo médio=%.0f ns, máximo=%d ns]",
+                    idle, borrows, misses, discards, averageBorrowNanos(), maxBorrowNanos);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import Lexica.Scanner;
+import Lexica.SymbolTable;
+import Sintatica.Parser;
+import Sintatica.Stmt;
+import Semantica.Interpreter;
+import Utils.Diagnostics;
+import Utils.ExecutionBudget;
+import ByteCode.Compiler;
+import ByteCode.Chunk;
+import ByteCode.VM;
+
+// Teste diferencial dos dois motores: java Diferencial <corpus> [opções]
+// Cada .cpqp do corpus (um diretório ou arquivos soltos) roda no Interpreter e na VM com a mesma entrada
+// (o arquivo .in de mesmo nome, se existir). A saída e o sucesso/erro da execução têm que ser iguais;
+// o texto das mensagens de erro no stderr pode mudar de um motor para o outro. Scripts sem entrada rodam
+// também duas vezes seguidas na mesma VM, que tem que repetir a saída (um erro não pode sujar o contexto).
+// Depois da comparação cada script roda --repeat vezes em cada motor para a tabela de desempenho.
+// Sai com 1 se algum script divergir ou não compilar.
+public class Diferencial {
+
+    private static final String USO =
+            "Uso: java Diferencial <diretório|script.cpqp>... [opções]\n" +
+            "  --repeat=N      execuções medidas por motor e script (padrão: 10; 0 = só compara)\n" +
+            "  --timeout=MS    limite de cada execução, para um laço infinito não travar o teste (padrão: 10000)\n";
+
+    // Saída de uma execução
+    private static final class Resultado {
+        final boolean ok;
+        final String out;
+        final String err;
+
+        Resultado(boolean ok, String out, String err) {
+            this.ok = ok;
+            this.out = out;
+            this.err = err;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        int repeticoes = 10;
+        long timeoutMs = 10_000;
+        for (String arg : args) {
+            if (arg.startsWith("--repeat=")) {
+                repeticoes = Integer.parseInt(arg.substring("--repeat=".length()));
+            } else if (arg.startsWith("--timeout=")) {
+                timeoutMs = Long.parseLong(arg.substring("--timeout=".length()));
+            } else if (arg.startsWith("--")) {
+                System.err.println("Argumento inválido: " + arg);
+                System.err.print(USO);
+                System.exit(2);
+            } else {
+                adicionar(Paths.get(arg), scripts);
+            }
+        }
+        if (scripts.isEmpty()) {
+            System.err.print(USO);
+            System.exit(2);
+        }
+
+        ExecutionBudget budget = ExecutionBudget.of(0, Duration.ofMillis(timeoutMs));
+        int falhas = 0;
+        System.out.println(String.format("%-28s %8s %12s %12s %8s", "script", "status", "árvore ms", "vm ms", "vm x"));
+        for (Path script : scripts) {
+            if (!comparar(script, budget, repeticoes)) falhas++;
+        }
+        System.out.println();
+        System.out.println(scripts.size() + " script(s), " + falhas + " divergência(s)");
+        System.exit(falhas == 0 ? 0 : 1);
+    }
+
+    private static void adicionar(Path caminho, List<Path> scripts) throws IOException {
+        if (!Files.isDirectory(caminho)) {
+            scripts.add(caminho);
+            return;
+        }
+        try (Stream<Path> arquivos = Files.list(caminho)) {
+            arquivos.filter(p -> p.toString().endsWith(".cpqp")).sorted().forEach(scripts::add);
+        }
+    }
+
+    // Compara um script nos dois motores e imprime a linha dele na tabela; false se divergiu
+    private static boolean comparar(Path script, ExecutionBudget budget, int repeticoes) throws IOException {
+        String nome = script.getFileName().toString();
+        Path arquivoEntrada = Paths.get(script.toString().replaceAll("\\.cpqp$", ".in"));
+        String entrada = Files.exists(arquivoEntrada)
+                ? new String(Files.readAllBytes(arquivoEntrada), StandardCharsets.UTF_8) : "";
+
+        // Análise uma vez só, lendo o arquivo como o Main lê: os dois motores recebem a mesma AST
+        Diagnostics diagnostics = Diagnostics.silent();
+        List<Stmt> statements;
+        try (Reader fonte = Main.abrirFonte(script)) {
+            statements = new Parser(new Scanner(fonte, new SymbolTable(), diagnostics)).parse();
+        }
+        Chunk chunk = diagnostics.hasErrors() ? null : new Compiler(diagnostics).compile(statements);
+        if (chunk == null) {
+            System.out.println(String.format("%-28s %8s", nome, "ERRO"));
+            System.out.println("    não compila: " + diagnostics.getAll().get(0));
+            return false;
+        }
+
+        Resultado arvore = rodarArvore(statements, entrada, budget);
+        Resultado vm = rodarVm(chunk, entrada, budget);
+        if (arvore.ok != vm.ok || !arvore.out.equals(vm.out)) {
+            System.out.println(String.format("%-28s %8s", nome, "DIVERGE"));
+            explicar(arvore, vm);
+            return false;
+        }
+        if (entrada.isEmpty()) {
+            Resultado reuso = rodarVmDuasVezes(chunk, budget);
+            if (reuso.ok != vm.ok || !reuso.out.equals(vm.out + vm.out)) {
+                System.out.println(String.format("%-28s %8s", nome, "DIVERGE"));
+                System.out.println("    segunda execução na mesma VM difere da primeira:");
+                explicar(new Resultado(vm.ok, vm.out + vm.out, vm.err), reuso);
+                return false;
+            }
+        }
+
+        if (repeticoes == 0) {
+            System.out.println(String.format("%-28s %8s", nome, "ok"));
+            return true;
+        }
+        double msArvore = medir(repeticoes, () -> rodarArvore(statements, entrada, budget));
+        double msVm = medir(repeticoes, () -> rodarVm(chunk, entrada, budget));
+        System.out.println(String.format("%-28s %8s %12.3f %12.3f %7.2fx", nome, "ok", msArvore, msVm, msArvore / msVm));
+        return true;
+    }
+
+    // Primeira linha diferente da saída e, se só um dos motores falhou, o stderr dos dois
+    private static void explicar(Resultado arvore, Resultado vm) {
+        String[] a = arvore.out.split("\n", -1);
+        String[] b = vm.out.split("\n", -1);
+        for (int i = 0; i < Math.max(a.length, b.length); i++) {
+            String linhaA = i < a.length ? a[i] : "<fim da saída>";
+            String linhaB = i < b.length ? b[i] : "<fim da saída>";
+            if (!linhaA.equals(linhaB)) {
+                System.out.println("    linha " + (i + 1) + " da saída:");
+                System.out.println("      árvore: " + linhaA);
+                System.out.println("      vm:     " + linhaB);
+                break;
+            }
+        }
+        if (arvore.ok != vm.ok) {
+            System.out.println("    árvore " + (arvore.ok ? "terminou" : "falhou: " + arvore.err.trim()));
+            System.out.println("    vm " + (vm.ok ? "terminou" : "falhou: " + vm.err.trim()));
+        }
+    }
+
+    private interface Execucao {
+        Resultado rodar();
+    }
+
+    // Tempo médio por execução, em ms
+    private static double medir(int repeticoes, Execucao execucao) {
+        long inicio = System.nanoTime();
+        for (int i = 0; i < repeticoes; i++) execucao.rodar();
+        return (System.nanoTime() - inicio) / 1e6 / repeticoes;
+    }
+
+    // O Interpreter usa System.in/System.out/System.err direto: troca os três enquanto ele roda
+    private static Resultado rodarArvore(List<Stmt> statements, String entrada, ExecutionBudget budget) {
+        InputStream inOriginal = System.in;
+        PrintStream outOriginal = System.out;
+        PrintStream errOriginal = System.err;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        boolean ok;
+        try {
+            System.setIn(new ByteArrayInputStream(entrada.getBytes(StandardCharsets.UTF_8)));
+            System.setOut(new PrintStream(out, false, StandardCharsets.UTF_8));
+            System.setErr(new PrintStream(err, false, StandardCharsets.UTF_8));
+            Interpreter interpreter = new Interpreter();
+            interpreter.setBudget(budget);
+            ok = interpreter.interpret(statements);
+            System.out.flush();
+            System.err.flush();
+        } finally {
+            System.setIn(inOriginal);
+            System.setOut(outOriginal);
+            System.setErr(errOriginal);
+        }
+        return new Resultado(ok, out.toString(StandardCharsets.UTF_8), err.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Resultado rodarVm(Chunk chunk, String entrada, ExecutionBudget budget) {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        VM vm = new VM(new StringReader(entrada), out, err);
+        vm.getContext().setBudget(budget);
+        boolean ok = vm.interpret(chunk);
+        return new Resultado(ok, out.toString(), err.toString());
+    }
+
+    // Mesmo contexto nas duas execuções; o resultado é o da segunda e a saída é a das duas juntas
+    private static Resultado rodarVmDuasVezes(Chunk chunk, ExecutionBudget budget) {
+        StringWriter out = new StringWriter();
+        StringWriter err = new StringWriter();
+        VM vm = new VM(new StringReader(""), out, err);
+        vm.getContext().setBudget(budget);
+        vm.interpret(chunk);
+        boolean ok = vm.interpret(chunk);
+        return new Resultado(ok, out.toString(), err.toString());
+    }
+}
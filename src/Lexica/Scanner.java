@@ -1,53 +1,302 @@
 package Lexica;
 
+import Utils.Diagnostics;
+import Utils.PipelineEvents;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Analisador léxico. Pode ler o fonte inteiro de uma String ou ir lendo aos poucos de um Reader;
+// em ambos os casos os tokens são produzidos sob demanda por nextToken() (o Parser puxa um por vez).
+public class Scanner implements TokenSource {
+    private static final int READ_BUFFER = 8192;
+    private static final int PARALLEL_MIN_CHUNK = 256 * 1024; // Abaixo disso o léxico paralelo não compensa
 
-public class Scanner {
-    private final String source;
-    private final List<Token> tokens = new ArrayList<>();
-    private int start = 0;
+    private final Reader reader;      // null quando o fonte inteiro já está em memória
+    private final SymbolTable symbols;
+    private final Diagnostics diagnostics; // Onde os erros léxicos são registrados
+    private char[] buf;               // Janela do fonte (ou o fonte inteiro)
+    private int limit;                // Fim dos caracteres válidos em buf
+    private int offset = 0;           // Posição absoluta no fonte de buf[0]
+    private boolean readerDone = false;
+    private int start = 0;            // Índices em buf
     private int current = 0;
     private int line = 1;
-    private static final Map<String, TokenType> keywords;
+    private Token pending;            // Token reconhecido pelo último scanToken()
+    private Token eof;
+    private int tokenCount = 0;
+    private List<Token> rangeTokens;  // Tokens de um trecho no léxico paralelo
+    private TokenBuffer buffer;       // Destino dos tokens em scanBuffer() (sem criar objetos Token)
+    // Texto fixo das palavras-chave, usado como lexema do token (indexado pelo ordinal do TokenType)
+    static final String[] keywordText = new String[TokenType.values().length];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("VAR", TokenType.VAR);
-        keywords.put("FUNCAO", TokenType.FUN);
-        keywords.put("RETORNA", TokenType.RETURN);
-        keywords.put("ESCREVEAI", TokenType.PRINT);
-        keywords.put("FAZAVOLTA", TokenType.FOR);
-        keywords.put("VOLTAINFINITA", TokenType.WHILE);
-        keywords.put("SE", TokenType.IF);
-        keywords.put("SENAO", TokenType.ELSE);
-        keywords.put("ISSOAI", TokenType.TRUE);
-        keywords.put("MENTIRA", TokenType.FALSE);
-        keywords.put("NULO", TokenType.NIL);
-        keywords.put("ESCOLHEAI", TokenType.SWITCH);
-        keywords.put("CASO", TokenType.CASE);
-        keywords.put("PADRAO", TokenType.DEFAULT);
-        keywords.put("LEIA", TokenType.INPUT);
-        keywords.put("PAREI", TokenType.BREAK);
+        keywordText[TokenType.VAR.ordinal()] = "VAR";
+        keywordText[TokenType.FUN.ordinal()] = "FUNCAO";
+        keywordText[TokenType.RETURN.ordinal()] = "RETORNA";
+        keywordText[TokenType.PRINT.ordinal()] = "ESCREVEAI";
+        keywordText[TokenType.FOR.ordinal()] = "FAZAVOLTA";
+        keywordText[TokenType.WHILE.ordinal()] = "VOLTAINFINITA";
+        keywordText[TokenType.IF.ordinal()] = "SE";
+        keywordText[TokenType.ELSE.ordinal()] = "SENAO";
+        keywordText[TokenType.TRUE.ordinal()] = "ISSOAI";
+        keywordText[TokenType.FALSE.ordinal()] = "MENTIRA";
+        keywordText[TokenType.NIL.ordinal()] = "NULO";
+        keywordText[TokenType.SWITCH.ordinal()] = "ESCOLHEAI";
+        keywordText[TokenType.CASE.ordinal()] = "CASO";
+        keywordText[TokenType.DEFAULT.ordinal()] = "PADRAO";
+        keywordText[TokenType.INPUT.ordinal()] = "LEIA";
+        keywordText[TokenType.BREAK.ordinal()] = "PAREI";
 
         // Tipos adicionais
-        keywords.put("INTEIRO", TokenType.INT);
-        keywords.put("QUEBRADO", TokenType.FLOAT);
-        keywords.put("BOOL", TokenType.BOOL);
+        keywordText[TokenType.INT.ordinal()] = "INTEIRO";
+        keywordText[TokenType.FLOAT.ordinal()] = "QUEBRADO";
+        keywordText[TokenType.BOOL.ordinal()] = "BOOL";
     }
 
     public Scanner(String source) {
-        this.source = source;
+        this(source, new SymbolTable());
+    }
+
+    // Permite compartilhar a tabela de símbolos entre vários fontes (ex: vários scripts na mesma VM)
+    public Scanner(String source, SymbolTable symbols) {
+        this(source, symbols, new Diagnostics());
+    }
+
+    public Scanner(String source, SymbolTable symbols, Diagnostics diagnostics) {
+        this.reader = null;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+        this.buf = source.toCharArray();
+        this.limit = buf.length;
+    }
+
+    // Retoma a análise no meio de um fonte: 'from' deve ser o início de um token e 'line' a linha dele
+    // (usado pela reanálise incremental para re-lexar só a região editada)
+    public Scanner(String source, int from, int line, SymbolTable symbols, Diagnostics diagnostics) {
+        this(source.toCharArray(), from, source.length(), line, symbols, diagnostics);
+    }
+
+    // Scanner de um trecho [from, to) de um fonte em memória, começando na linha 'line' (léxico paralelo)
+    private Scanner(char[] source, int from, int to, int line, SymbolTable symbols, Diagnostics diagnostics) {
+        this.reader = null;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+        this.buf = source;
+        this.start = from;
+        this.current = from;
+        this.limit = to;
+        this.line = line;
+    }
+
+    // Modo streaming: lê o fonte do Reader conforme os tokens são pedidos, mantendo só uma janela em memória
+    public Scanner(Reader reader) {
+        this(reader, new SymbolTable());
+    }
+
+    public Scanner(Reader reader, SymbolTable symbols) {
+        this(reader, symbols, new Diagnostics());
+    }
+
+    public Scanner(Reader reader, SymbolTable symbols, Diagnostics diagnostics) {
+        this.reader = reader;
+        this.symbols = symbols;
+        this.diagnostics = diagnostics;
+        this.buf = new char[READ_BUFFER];
+        this.limit = 0;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    // O Parser que consome este Scanner registra os erros no mesmo coletor
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    // Quantidade de tokens entregues até agora (inclui o EOF)
+    public int getTokenCount() {
+        return tokenCount;
     }
 
     public List<Token> scanTokens() {
+        PipelineEvents.ScanEvent event = new PipelineEvents.ScanEvent();
+        event.begin();
+        List<Token> tokens = new ArrayList<>();
+        Token token;
+        do {
+            token = nextToken();
+            tokens.add(token);
+        } while (token.type != TokenType.EOF);
+        commit(event, "sequencial", tokens.size());
+        return tokens;
+    }
+
+    // Analisa o fonte inteiro para um TokenBuffer compacto (arrays paralelos em vez de objetos Token).
+    // Só funciona com o fonte em memória, porque o buffer guarda posições dentro dele.
+    public TokenBuffer scanBuffer() {
+        if (reader != null) throw new IllegalStateException("O TokenBuffer exige o fonte inteiro em memória.");
+        PipelineEvents.ScanEvent event = new PipelineEvents.ScanEvent();
+        event.begin();
+        buffer = new TokenBuffer(buf, symbols);
         while (!isAtEnd()) {
             start = current;
             scanToken();
         }
-        tokens.add(new Token(TokenType.EOF, "", null, line, current));
+        start = current;
+        emit(TokenType.EOF, null, -1);
+        TokenBuffer result = buffer;
+        result.trim();
+        buffer = null;
+        tokenCount += result.size();
+        commit(event, "buffer", result.size());
+        return result;
+    }
+
+    // Desloca as posições de tokens[from..] (reanálise incremental: os tokens depois de uma edição são
+    // reaproveitados com as posições novas). Único jeito de mudar a posição de um Token já criado.
+    public static void shiftTokens(List<Token> tokens, int from, int lines, int columns) {
+        for (int i = from; i < tokens.size(); i++) tokens.get(i).shift(lines, columns);
+    }
+
+    // Léxico paralelo para fontes grandes em memória. O fonte é dividido em quebras de linha seguras
+    // (fora de strings e de comentários de bloco), cada trecho é analisado no pool com a linha inicial
+    // certa e os tokens são emendados em ordem. O resultado é idêntico ao de scanTokens().
+    public List<Token> scanTokensParallel() {
+        return scanTokensParallel(ForkJoinPool.commonPool());
+    }
+
+    public List<Token> scanTokensParallel(ForkJoinPool pool) {
+        if (reader != null) throw new IllegalStateException("O léxico paralelo exige o fonte inteiro em memória.");
+        if (pool.getParallelism() < 2) return scanTokens();
+        int chunkSize = Math.max(PARALLEL_MIN_CHUNK, (limit - current) / (pool.getParallelism() * 4));
+        List<int[]> chunks = splitPoints(chunkSize);
+        if (chunks.size() == 1) return scanTokens();
+        PipelineEvents.ScanEvent event = new PipelineEvents.ScanEvent();
+        event.begin();
+
+        // O primeiro trecho usa a tabela de símbolos compartilhada; os outros usam tabelas locais
+        List<ForkJoinTask<Scanner>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            int from = chunks.get(i)[0];
+            int to = (i + 1 < chunks.size()) ? chunks.get(i + 1)[0] : limit;
+            int firstLine = chunks.get(i)[1];
+            SymbolTable table = (i == 0) ? symbols : new SymbolTable();
+            // Cada trecho junta os próprios erros; eles entram no coletor na ordem do fonte, na emenda
+            tasks.add(pool.submit(() -> new Scanner(buf, from, to, firstLine, table, Diagnostics.silent()).scanRange()));
+        }
+
+        // Emenda em ordem. Internar os símbolos locais na ordem dos trechos dá os mesmos IDs do modo sequencial.
+        List<Token> tokens = new ArrayList<>();
+        Scanner last = null;
+        for (int i = 0; i < tasks.size(); i++) {
+            Scanner part = tasks.get(i).join();
+            diagnostics.addAll(part.diagnostics);
+            if (i == 0) {
+                tokens.addAll(part.rangeTokens);
+            } else {
+                int[] remap = new int[part.symbols.size()];
+                for (int id = 0; id < remap.length; id++) remap[id] = symbols.intern(part.symbols.name(id));
+                for (Token token : part.rangeTokens) {
+                    if (token.symbol < 0) {
+                        tokens.add(token);
+                    } else {
+                        int symbol = remap[token.symbol];
+                        tokens.add(new Token(token.type, symbols.name(symbol), null, token.getLine(), token.getColumn(), symbol));
+                    }
+                }
+            }
+            last = part;
+        }
+        tokens.add(last.eof);
+
+        // Este Scanner fica consumido, como depois de scanTokens()
+        current = limit;
+        line = last.line;
+        eof = last.eof;
+        tokenCount += tokens.size();
+        commit(event, "paralelo", tokens.size());
         return tokens;
     }
 
+    private static void commit(PipelineEvents.ScanEvent event, String mode, int tokens) {
+        if (event.shouldCommit()) {
+            event.script = PipelineEvents.scriptName();
+            event.mode = mode;
+            event.tokens = tokens;
+            event.commit();
+        }
+    }
+
+    // Analisa o trecho inteiro e guarda os tokens (sem o EOF, que só vale para o último trecho)
+    private Scanner scanRange() {
+        rangeTokens = new ArrayList<>();
+        Token token;
+        while ((token = nextToken()).type != TokenType.EOF) rangeTokens.add(token);
+        return this;
+    }
+
+    // Pré-varredura rápida: acha, a cada ~chunkSize caracteres, uma quebra de linha fora de string e de
+    // comentário de bloco. Retorna {início, linha} de cada trecho. Conta as linhas como o scanToken()
+    // (quebras dentro de comentário de bloco não contam).
+    private List<int[]> splitPoints(int chunkSize) {
+        List<int[]> points = new ArrayList<>();
+        points.add(new int[] { current, line });
+        char[] s = buf;
+        int end = limit;
+        int lineCount = line;
+        int next = current + chunkSize;
+        int i = current;
+        while (i < end) {
+            char c = s[i++];
+            if (c == '\n') {
+                lineCount++;
+                if (i >= next && i < end) {
+                    points.add(new int[] { i, lineCount });
+                    next = i + chunkSize;
+                }
+            } else if (c == '"') {
+                while (i < end && s[i] != '"') {
+                    if (s[i] == '\n') lineCount++;
+                    i++;
+                }
+                i++; // O " de fechamento
+            } else if (c == '/' && i < end && s[i] == '/') {
+                while (i < end && s[i] != '\n') i++;
+            } else if (c == '/' && i < end && s[i] == '*') {
+                i++;
+                while (i < end && !(s[i] == '*' && i + 1 < end && s[i + 1] == '/')) i++;
+                i += 2;
+            }
+        }
+        return points;
+    }
+
+    // Reconhece e devolve o próximo token; depois do fim do fonte devolve sempre o mesmo EOF
+    @Override
+    public Token nextToken() {
+        while (pending == null) {
+            if (isAtEnd()) {
+                if (eof == null) {
+                    eof = new Token(TokenType.EOF, "", null, line, offset + current);
+                    tokenCount++;
+                }
+                return eof;
+            }
+            start = current;
+            scanToken();
+        }
+        Token token = pending;
+        pending = null;
+        tokenCount++;
+        return token;
+    }
+
     private void scanToken() {
         char c = advance();
         switch (c) {
@@ -78,7 +327,10 @@ public class Scanner {
                     while (peek() != '\n' && !isAtEnd()) advance();
                 } else if (match('*')) {
                     // Comentário de bloco
-                    while (!(peek() == '*' && peekNext() == '/') && !isAtEnd()) advance();
+                    while (!(peek() == '*' && peekNext() == '/') && !isAtEnd()) {
+                        advance();
+                        start = current; // Comentário não vira token: libera a janela do Reader
+                    }
                     if (!isAtEnd()) {
                         advance(); // consome *
                         advance(); // consome /
@@ -109,7 +361,8 @@ public class Scanner {
                 } else if (isAlpha(c)) {
                     identifier();
                 } else {
-                    System.err.println("Caractere inválido na linha " + line + ": " + c);
+                    diagnostics.report(Diagnostics.Phase.LEXICO, line, offset + start,
+                            "Caractere inválido na linha " + line + ": " + c);
                 }
                 break;
         }
@@ -121,10 +374,79 @@ public class Scanner {
         while (isAlphaNumeric(peek())) {
             advance();
         }
-        String text = source.substring(start, current);
-        TokenType type = keywords.get(text);
-        if (type == null) type = TokenType.IDENTIFIER;
-        addToken(type);
+        TokenType type = keyword(buf, start, current - start);
+        if (type != null) {
+            addToken(type);
+            return;
+        }
+        emit(TokenType.IDENTIFIER, null, symbols.intern(buf, start, current));
+    }
+
+    // Reconhece palavras-chave direto no buffer: switch pelo tamanho e pela primeira letra,
+    // depois compara o resto com o texto da palavra-chave candidata.
+    private static TokenType keyword(char[] s, int start, int length) {
+        switch (length) {
+            case 2:
+                if (s[start] == 'S') return is(s, start, TokenType.IF);
+                return null;
+            case 3:
+                if (s[start] == 'V') return is(s, start, TokenType.VAR);
+                return null;
+            case 4:
+                switch (s[start]) {
+                    case 'N': return is(s, start, TokenType.NIL);
+                    case 'C': return is(s, start, TokenType.CASE);
+                    case 'L': return is(s, start, TokenType.INPUT);
+                    case 'B': return is(s, start, TokenType.BOOL);
+                }
+                return null;
+            case 5:
+                switch (s[start]) {
+                    case 'S': return is(s, start, TokenType.ELSE);
+                    case 'P': return is(s, start, TokenType.BREAK);
+                }
+                return null;
+            case 6:
+                switch (s[start]) {
+                    case 'F': return is(s, start, TokenType.FUN);
+                    case 'I': return is(s, start, TokenType.TRUE);
+                    case 'P': return is(s, start, TokenType.DEFAULT);
+                }
+                return null;
+            case 7:
+                switch (s[start]) {
+                    case 'R': return is(s, start, TokenType.RETURN);
+                    case 'M': return is(s, start, TokenType.FALSE);
+                    case 'I': return is(s, start, TokenType.INT);
+                }
+                return null;
+            case 8:
+                if (s[start] == 'Q') return is(s, start, TokenType.FLOAT);
+                return null;
+            case 9:
+                switch (s[start]) {
+                    case 'F': return is(s, start, TokenType.FOR);
+                    case 'E':
+                        // ESCREVEAI e ESCOLHEAI só diferem a partir da quarta letra
+                        if (s[start + 3] == 'R') return is(s, start, TokenType.PRINT);
+                        return is(s, start, TokenType.SWITCH);
+                }
+                return null;
+            case 13:
+                if (s[start] == 'V') return is(s, start, TokenType.WHILE);
+                return null;
+            default:
+                return null;
+        }
+    }
+
+    // Confere se o trecho do buffer é exatamente a palavra-chave de 'type' (o tamanho já foi checado)
+    private static TokenType is(char[] s, int start, TokenType type) {
+        String text = keywordText[type.ordinal()];
+        for (int i = 1; i < text.length(); i++) {
+            if (s[start + i] != text.charAt(i)) return null;
+        }
+        return type;
     }
 
     private void number() {
@@ -135,10 +457,10 @@ public class Scanner {
             advance(); // Consome o "."
             while (isDigit(peek())) advance();
 
-            String text = source.substring(start, current);
+            String text = text(start, current);
             addToken(TokenType.NUMBER, Double.parseDouble(text));
         } else {
-            String text = source.substring(start, current);
+            String text = text(start, current);
             addToken(TokenType.NUMBER, Integer.parseInt(text));
         }
     }
@@ -150,30 +472,30 @@ public class Scanner {
         }
 
         if (isAtEnd()) {
-            System.err.println("String não terminada na linha " + line);
+            diagnostics.report(Diagnostics.Phase.LEXICO, line, offset + start, "String não terminada na linha " + line);
             return;
         }
 
         advance(); // O " de fechamento
-        String value = source.substring(start + 1, current - 1);
+        String value = text(start + 1, current - 1);
         addToken(TokenType.STRING, value);
     }
 
     private boolean match(char expected) {
         if (isAtEnd()) return false;
-        if (source.charAt(current) != expected) return false;
+        if (buf[current] != expected) return false;
         current++;
         return true;
     }
 
     private char peek() {
         if (isAtEnd()) return '\0';
-        return source.charAt(current);
+        return buf[current];
     }
 
     private char peekNext() {
-        if (current + 1 >= source.length()) return '\0';
-        return source.charAt(current + 1);
+        if (current + 1 >= limit && !fill(2)) return '\0';
+        return buf[current + 1];
     }
 
     private boolean isAlpha(char c) {
@@ -191,11 +513,40 @@ public class Scanner {
     }
 
     private char advance() {
-        return source.charAt(current++);
+        return buf[current++];
     }
 
     private boolean isAtEnd() {
-        return current >= source.length();
+        return current >= limit && !fill(1);
+    }
+
+    // Garante 'needed' caracteres a partir de 'current', lendo mais do Reader se preciso.
+    // Descarta o que já virou token (antes de 'start') e só cresce a janela para lexemas muito longos.
+    private boolean fill(int needed) {
+        if (reader == null) return false;
+        while (limit - current < needed) {
+            if (readerDone) return false;
+            if (start > 0) {
+                System.arraycopy(buf, start, buf, 0, limit - start);
+                offset += start;
+                limit -= start;
+                current -= start;
+                start = 0;
+            }
+            if (limit == buf.length) buf = Arrays.copyOf(buf, buf.length * 2);
+            try {
+                int read = reader.read(buf, limit, buf.length - limit);
+                if (read < 0) readerDone = true;
+                else limit += read;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return true;
+    }
+
+    private String text(int from, int to) {
+        return new String(buf, from, to - from);
     }
 
     private void addToken(TokenType type) {
@@ -203,7 +554,22 @@ public class Scanner {
     }
 
     private void addToken(TokenType type, Object literal) {
-        String lexeme = source.substring(start, current);
-        tokens.add(new Token(type, lexeme, literal, line, start));
+        emit(type, literal, -1);
+    }
+
+    private void emit(TokenType type, Object literal, int symbol) {
+        if (buffer != null) {
+            buffer.add(type, offset + start, current - start, line, symbol, literal);
+            return;
+        }
+        pending = new Token(type, lexeme(type, symbol), literal, line, offset + start, symbol);
+    }
+
+    // Palavras-chave usam a constante da tabela e identificadores o nome internado: só o resto vira substring
+    private String lexeme(TokenType type, int symbol) {
+        if (symbol >= 0) return symbols.name(symbol);
+        String fixed = keywordText[type.ordinal()];
+        if (fixed != null) return fixed;
+        return text(start, current);
     }
 }
\ No newline at end of file
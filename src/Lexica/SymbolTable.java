@@ -0,0 +1,123 @@
+package Lexica;
+
+import java.util.Arrays;
+
+// Tabela de símbolos compartilhada: interna os lexemas de identificadores em IDs inteiros densos (0, 1, 2...).
+// O Scanner interna direto sobre os caracteres do código-fonte, sem criar substring para nomes já vistos.
+// Parser, Interpreter e Compiler passam a comparar e indexar variáveis pelo ID (Token.symbol).
+public class SymbolTable {
+    private String[] names = new String[64]; // ID -> nome
+    private int[] hashes = new int[64];      // ID -> hash do nome (evita recalcular no rehash)
+    private int[] slots = new int[128];      // Endereçamento aberto: ID + 1 (0 = vazio)
+    private int count = 0;
+
+    // Interna o trecho [start, end) do código-fonte e retorna o ID do símbolo
+    public int intern(CharSequence source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (true) {
+            int entry = slots[index];
+            if (entry == 0) break;
+            int id = entry - 1;
+            if (hashes[id] == hash && sameText(names[id], source, start, end)) return id;
+            index = (index + 1) & mask;
+        }
+        return add(source.subSequence(start, end).toString(), hash, index);
+    }
+
+    // Mesmo que intern(CharSequence...), direto sobre o buffer de caracteres do Scanner
+    public int intern(char[] source, int start, int end) {
+        int hash = hash(source, start, end);
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (true) {
+            int entry = slots[index];
+            if (entry == 0) break;
+            int id = entry - 1;
+            if (hashes[id] == hash && sameText(names[id], source, start, end)) return id;
+            index = (index + 1) & mask;
+        }
+        return add(new String(source, start, end - start), hash, index);
+    }
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    // Retorna o ID do nome, ou -1 se ele nunca foi internado
+    public int lookup(String name) {
+        int hash = hash(name, 0, name.length());
+        int mask = slots.length - 1;
+        int index = hash & mask;
+        while (true) {
+            int entry = slots[index];
+            if (entry == 0) return -1;
+            int id = entry - 1;
+            if (hashes[id] == hash && names[id].equals(name)) return id;
+            index = (index + 1) & mask;
+        }
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private int add(String name, int hash, int index) {
+        int id = count++;
+        if (id == names.length) {
+            names = Arrays.copyOf(names, id * 2);
+            hashes = Arrays.copyOf(hashes, id * 2);
+        }
+        names[id] = name;
+        hashes[id] = hash;
+        slots[index] = id + 1;
+        // Mantém a ocupação abaixo de 50% para as sondagens continuarem curtas
+        if (count * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        int[] bigger = new int[slots.length * 2];
+        int mask = bigger.length - 1;
+        for (int id = 0; id < count; id++) {
+            int index = hashes[id] & mask;
+            while (bigger[index] != 0) index = (index + 1) & mask;
+            bigger[index] = id + 1;
+        }
+        slots = bigger;
+    }
+
+    private static boolean sameText(String name, CharSequence source, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source.charAt(start + i)) return false;
+        }
+        return true;
+    }
+
+    private static boolean sameText(String name, char[] source, int start, int end) {
+        if (name.length() != end - start) return false;
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != source[start + i]) return false;
+        }
+        return true;
+    }
+
+    private static int hash(char[] source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + source[i];
+        return h ^ (h >>> 16);
+    }
+
+    private static int hash(CharSequence source, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) h = 31 * h + source.charAt(i);
+        // Espalha os bits baixos, usados como índice na tabela
+        return h ^ (h >>> 16);
+    }
+}
@@ -5,16 +5,38 @@ public class Token {
     public final TokenType type; // Tipo do token (ex: IDENTIFIER, PLUS, IF, NUMBER, etc)
     public final String lexeme; // Lexema: o texto literal do token no código-fonte
     public final Object literal; // Valor literal (caso seja um número, string, etc) - pode ser null
-    public final int line; // Número da linha onde o token foi encontrado
-    public final int column; // Coluna onde começa o token na linha
+    private int line; // Número da linha onde o token foi encontrado (muda só via shift)
+    private int column; // Coluna onde começa o token na linha (muda só via shift)
+    public final int symbol; // ID do identificador na SymbolTable (-1 se não for IDENTIFIER)
 
     // Construtor: inicializa todos os campos do token
     public Token(TokenType type, String lexeme, Object literal, int line, int column) {
+        this(type, lexeme, literal, line, column, -1);
+    }
+
+    // Construtor para identificadores já internados na tabela de símbolos
+    public Token(TokenType type, String lexeme, Object literal, int line, int column, int symbol) {
         this.type = type;         // Tipo do token
         this.lexeme = lexeme;     // Texto do token
         this.literal = literal;   // Valor literal, se existir
         this.line = line;         // Linha de origem
         this.column = column;     // Coluna de origem
+        this.symbol = symbol;     // ID do símbolo, se existir
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    // Desloca a posição do token. Só o Scanner.shiftTokens chama, para o IncrementalParser reaproveitar
+    // os tokens (e as subárvores que apontam para eles) que ficaram depois de uma edição.
+    void shift(int lines, int offset) {
+        this.line += lines;
+        this.column += offset;
     }
 
     // Representação em string do token para debug e mensagens de erro
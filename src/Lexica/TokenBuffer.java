@@ -0,0 +1,106 @@
+package Lexica;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Lista de tokens em formato compacto (struct-of-arrays): um byte de tipo e alguns ints por token,
+// apontando para dentro do fonte, em vez de um objeto Token + String de lexema para cada um.
+// O ganho é no que fica guardado: o buffer não retém nenhum objeto Token. O Parser lê através de cursor(),
+// que cria um Token para cada índice conforme avança; esses objetos são de vida curta, e só sobrevivem
+// os que a AST guarda (nomes, operadores, palavras-chave usadas em mensagens de erro).
+public class TokenBuffer {
+    private static final TokenType[] TYPES = TokenType.values();
+
+    private final char[] source;
+    private final SymbolTable symbols;
+    private byte[] types = new byte[1024];   // Ordinal do TokenType
+    private int[] starts = new int[1024];    // Posição do lexema no fonte
+    private int[] lengths = new int[1024];   // Tamanho do lexema
+    private int[] lines = new int[1024];     // Linha de origem
+    private int[] extras = new int[1024];    // ID do símbolo (IDENTIFIER), índice do literal (NUMBER/STRING) ou -1
+    private final List<Object> literals = new ArrayList<>(); // Tabela lateral de literais
+    private int size = 0;
+
+    TokenBuffer(char[] source, SymbolTable symbols) {
+        this.source = source;
+        this.symbols = symbols;
+    }
+
+    void add(TokenType type, int start, int length, int line, int symbol, Object literal) {
+        if (size == types.length) grow();
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        if (literal != null) {
+            extras[size] = literals.size();
+            literals.add(literal);
+        } else {
+            extras[size] = symbol;
+        }
+        size++;
+    }
+
+    private void grow() {
+        resize(types.length * 2);
+    }
+
+    // Libera a folga do crescimento depois que o Scanner termina
+    void trim() {
+        if (size < types.length) resize(size);
+    }
+
+    private void resize(int capacity) {
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        extras = Arrays.copyOf(extras, capacity);
+    }
+
+    // --- Acesso por índice ---
+
+    public int size() { return size; }
+    public TokenType type(int index) { return TYPES[types[index]]; }
+    public int start(int index) { return starts[index]; }
+    public int length(int index) { return lengths[index]; }
+    public int line(int index) { return lines[index]; }
+
+    public int symbol(int index) {
+        return type(index) == TokenType.IDENTIFIER ? extras[index] : -1;
+    }
+
+    public Object literal(int index) {
+        TokenType type = type(index);
+        if (type == TokenType.NUMBER || type == TokenType.STRING) return literals.get(extras[index]);
+        return null;
+    }
+
+    // O lexema só é materializado aqui, quando alguém pede
+    public String lexeme(int index) {
+        int symbol = symbol(index);
+        if (symbol >= 0) return symbols.name(symbol);
+        String fixed = Scanner.keywordText[types[index]];
+        if (fixed != null) return fixed;
+        return new String(source, starts[index], lengths[index]);
+    }
+
+    // Cria o objeto Token equivalente ao que o Scanner teria produzido
+    public Token token(int index) {
+        return new Token(type(index), lexeme(index), literal(index), lines[index], starts[index], symbol(index));
+    }
+
+    // Fonte de tokens para o Parser: percorre o buffer por índice e para no EOF (um Token novo por índice)
+    public TokenSource cursor() {
+        return new TokenSource() {
+            private int index = 0;
+            @Override
+            public Token nextToken() {
+                Token token = token(index);
+                if (index < size - 1) index++;
+                return token;
+            }
+        };
+    }
+}
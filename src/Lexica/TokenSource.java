@@ -0,0 +1,7 @@
+package Lexica;
+
+// Fonte de tokens sob demanda: o Parser puxa um token por vez em vez de receber a lista inteira.
+// Depois do fim, nextToken() deve continuar devolvendo o token EOF.
+public interface TokenSource {
+    Token nextToken();
+}
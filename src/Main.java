@@ -1,73 +1,333 @@
 import java.util.List;
+import java.util.Locale;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.Duration;
 import Lexica.Scanner;
-import Lexica.Token;
 import Sintatica.Parser;
 import Sintatica.Stmt;
+import Semantica.Interpreter;
 import Utils.AstHtml;
+import Utils.Diagnostics;
+import Utils.ExecutionBudget;
+import Utils.OutputSink;
+import Utils.PipelineEvents;
 import ByteCode.Compiler;
 import ByteCode.Chunk;
 import ByteCode.VM;
 import ByteCode.Debug;
+import ByteCode.Profiler;
+import ByteCode.OpcodeHistogram;
+import ByteCode.Probe;
 
+// Linha de comando: java Main <script.cpqp> [opções]
+// Sem opções só executa o script (a saída do programa é a única coisa impressa);
+// os estágios de depuração (HTML da AST, bytecode desmontado, tempos) são ligados por opção.
 public class Main {
+
+    private static final String USO =
+            "Uso: java Main <script.cpqp> [opções]\n" +
+            "  --engine=vm|tree     motor de execução (padrão: vm)\n" +
+            "  --ast-html[=arquivo] gera o HTML da AST (padrão: arvore.html)\n" +
+            "  --disasm             mostra o bytecode gerado (usa o compilador da VM)\n" +
+            "  --timings            mostra o tempo de cada etapa no stderr\n" +
+            "  --fuel=N             interrompe após N passos (voltas de laço + chamadas)\n" +
+            "  --timeout=MS         interrompe após MS milissegundos de execução\n" +
+            "  --max-alloc=BYTES    interrompe após alocar ~BYTES (aceita sufixo k, m, g)\n" +
+            "  --profile[=arquivo]  amostra a VM: relatório por linha no stderr e pilhas colapsadas\n" +
+            "                       para flame graph no arquivo (padrão: perfil.collapsed; só na VM)\n" +
+            "  --profile-interval=US intervalo entre amostras em microssegundos (padrão: 1000)\n" +
+            "  --opcode-stats[=arquivo.json] histograma de opcodes e pares de opcodes no stderr\n" +
+            "                       (e em JSON no arquivo, se dado; só na VM)\n" +
+            "  --opcode-timing      junto com --opcode-stats, mede também o tempo de cada opcode\n" +
+            "  --output=arquivo     grava a saída do programa no arquivo em vez do stdout\n" +
+            "  --flush=line|full    descarrega a saída a cada linha ou só com o buffer cheio\n" +
+            "                       (padrão: line num terminal, full fora dele)\n";
+
+    // Opções da linha de comando
+    private static final class Opcoes {
+        String programa;
+        String engine = "vm";
+        String html;
+        boolean disasm;
+        boolean timings;
+        long fuel;
+        long timeoutMs;
+        long maxAlloc;
+        String perfil;              // Arquivo das pilhas colapsadas (null = sem profiler)
+        long intervaloPerfil = 1000; // µs entre amostras
+        boolean histograma;         // Histograma de opcodes
+        String histogramaJson;      // Arquivo do histograma em JSON (null = só texto)
+        boolean tempoOpcodes;
+        String saida;               // Arquivo da saída do programa (null = stdout)
+        Boolean porLinha;           // Descarregar a cada linha (null = decide pelo terminal)
+    }
+
     public static void main(String[] args) {
+        System.exit(executar(args));
+    }
 
-        // Usar o caminho fixo
-        String caminhoPrograma = "C:\\Users\\natna\\Downloads\\CodesPqp-master\\CodesPqp-master\\src\\programa.cpqp";
+    // O mesmo que main, mas devolve o código de saída em vez de encerrar a JVM
+    // (para rodar o pipeline inteiro várias vezes no mesmo processo, como faz o benchmark de macro)
+    public static int executar(String[] args) {
+        Opcoes op = new Opcoes();
 
-        String caminhoHtml = "arvore.html";
+        try {
+            for (String arg : args) {
+                if (arg.startsWith("--engine=")) {
+                    op.engine = arg.substring("--engine=".length());
+                } else if (arg.equals("--ast-html")) {
+                    op.html = "arvore.html";
+                } else if (arg.startsWith("--ast-html=")) {
+                    op.html = arg.substring("--ast-html=".length());
+                } else if (arg.equals("--disasm")) {
+                    op.disasm = true;
+                } else if (arg.equals("--timings")) {
+                    op.timings = true;
+                } else if (arg.startsWith("--fuel=")) {
+                    op.fuel = limite(arg, "--fuel=");
+                } else if (arg.startsWith("--timeout=")) {
+                    op.timeoutMs = limite(arg, "--timeout=");
+                } else if (arg.startsWith("--max-alloc=")) {
+                    op.maxAlloc = limite(arg, "--max-alloc=");
+                } else if (arg.equals("--profile")) {
+                    op.perfil = "perfil.collapsed";
+                } else if (arg.startsWith("--profile=")) {
+                    op.perfil = arg.substring("--profile=".length());
+                } else if (arg.startsWith("--profile-interval=")) {
+                    op.intervaloPerfil = limite(arg, "--profile-interval=");
+                } else if (arg.equals("--opcode-stats")) {
+                    op.histograma = true;
+                } else if (arg.startsWith("--opcode-stats=")) {
+                    op.histograma = true;
+                    op.histogramaJson = arg.substring("--opcode-stats=".length());
+                } else if (arg.equals("--opcode-timing")) {
+                    op.tempoOpcodes = true;
+                } else if (arg.startsWith("--output=")) {
+                    op.saida = arg.substring("--output=".length());
+                } else if (arg.equals("--flush=line") || arg.equals("--flush=full")) {
+                    op.porLinha = arg.equals("--flush=line");
+                } else if (arg.equals("--help") || arg.equals("-h")) {
+                    System.out.print(USO);
+                    return 0;
+                } else if (arg.startsWith("--") || op.programa != null) {
+                    System.err.println("Argumento inválido: " + arg);
+                    System.err.print(USO);
+                    return 2;
+                } else {
+                    op.programa = arg;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            // Valor numérico inválido: uso inválido, sem derrubar a JVM de quem chamou executar()
+            System.err.println("Argumento inválido: " + e.getMessage());
+            System.err.print(USO);
+            return 2;
+        }
+        if (op.programa == null || !(op.engine.equals("tree") || op.engine.equals("vm"))) {
+            System.err.print(USO);
+            return 2;
+        }
+        if (op.perfil != null) {
+            if (!op.engine.equals("vm") || op.intervaloPerfil == 0) {
+                System.err.println("--profile exige --engine=vm e intervalo maior que zero");
+                return 2;
+            }
+        }
+        if (op.tempoOpcodes && !op.histograma) op.histograma = true;
+        if (op.histograma && !op.engine.equals("vm")) {
+            System.err.println("--opcode-stats exige --engine=vm");
+            return 2;
+        }
+        if (op.perfil != null || op.histograma) {
+            // Tem que vir antes do primeiro uso da classe VM, que lê a propriedade na inicialização
+            System.setProperty(VM.PROBES_PROPERTY, "true");
+            if (!VM.PROBES) {
+                // A VM já tinha sido carregada nesta JVM (executar() chamado antes) com os ganchos desligados
+                System.err.println("--profile e --opcode-stats exigem -D" + VM.PROBES_PROPERTY + "=true nesta JVM");
+                return 2;
+            }
+        }
 
+        // Nome do script nos eventos do JFR (-XX:StartFlightRecording)
+        String anterior = PipelineEvents.enterScript(op.programa);
         try {
-            //Ler o ficheiro
-            String programa = new String(Files.readAllBytes(Paths.get(caminhoPrograma)));
+            return run(op);
+        } finally {
+            PipelineEvents.exitScript(anterior);
+        }
+    }
 
-            //Análise Léxica (Scanner)
-            Scanner scanner = new Scanner(programa);
-            List<Token> tokens = scanner.scanTokens();
-            System.out.println("Análise léxica concluída: " + tokens.size() + " tokens.");
+    // Valor numérico não negativo de --fuel/--timeout/--max-alloc (sufixos k, m, g multiplicam por 1024);
+    // IllegalArgumentException se não for
+    private static long limite(String arg, String prefixo) {
+        String texto = arg.substring(prefixo.length()).toLowerCase();
+        long escala = 1;
+        if (texto.endsWith("k")) escala = 1L << 10;
+        else if (texto.endsWith("m")) escala = 1L << 20;
+        else if (texto.endsWith("g")) escala = 1L << 30;
+        if (escala > 1) texto = texto.substring(0, texto.length() - 1);
+        try {
+            long valor = Long.parseLong(texto);
+            if (valor >= 0) return Math.multiplyExact(valor, escala);
+        } catch (NumberFormatException | ArithmeticException e) {
+            // cai no erro abaixo
+        }
+        throw new IllegalArgumentException(arg);
+    }
 
-            //Análise Sintática (Parser -> AST)
-            Parser parser = new Parser(tokens);
-            List<Stmt> statements = parser.parse();
+    // Fonte em UTF-8; bytes inválidos (um arquivo salvo em Latin-1, por exemplo) viram U+FFFD em vez de
+    // derrubar a leitura, como no new String(bytes) de antes do modo streaming
+    static Reader abrirFonte(Path caminho) throws IOException {
+        return new BufferedReader(new InputStreamReader(Files.newInputStream(caminho), StandardCharsets.UTF_8));
+    }
 
-            if (statements == null || statements.isEmpty()) {
-                System.err.println("Nenhum comando válido encontrado no código.");
-                return;
-            }
-            System.out.println("Análise sintática concluída. (" + statements.size() + " statements)");
+    // Executa o pipeline e retorna o código de saída do processo
+    private static int run(Opcoes op) {
+        String caminhoPrograma = op.programa;
+        String engine = op.engine;
+        boolean timings = op.timings;
+        long inicio = System.nanoTime();
 
-            //Gerar visualização da AST
-            AstHtml printer = new AstHtml();
-            printer.gerarHtml(statements, caminhoHtml);
-            System.out.println("Arquivo HTML da AST salvo em: " + caminhoHtml);
+        //Ler o ficheiro aos poucos: o Scanner produz tokens sob demanda e o Parser vai puxando
+        List<Stmt> statements;
+        Diagnostics diagnostics;
+        int tokens;
+        try (Reader programa = abrirFonte(Paths.get(caminhoPrograma))) {
+            //Análise Léxica (Scanner) + Análise Sintática (Parser -> AST)
+            Scanner scanner = new Scanner(programa);
+            Parser parser = new Parser(scanner);
+            statements = parser.parse();
+            diagnostics = parser.getDiagnostics();
+            tokens = scanner.getTokenCount();
+        } catch (IOException | UncheckedIOException e) {
+            // O Scanner lê sob demanda: um erro de leitura no meio do arquivo chega embrulhado
+            System.err.println("Erro ao ler o arquivo do programa: " + e.getMessage());
+            return 1;
+        }
+        long analise = System.nanoTime();
+        if (timings) {
+            tempo("análise (léxica + sintática)", inicio, analise,
+                    tokens + " tokens, " + statements.size() + " statements");
+        }
 
-            //Compilação (AST -> Bytecode)
-            Compiler compiler = new Compiler();
-            Chunk chunk = compiler.compile(statements);
+        // Um programa com erro não é executado pela metade
+        if (diagnostics.hasErrors()) {
+            System.err.println(diagnostics.count() + " erro(s) encontrados no código.");
+            return 1;
+        }
 
-            if (chunk == null) {
-                System.err.println("Falha na compilação.");
-                return;
-            }
-            System.out.println("Compilação para bytecode concluída.");
+        //Gerar visualização da AST
+        if (op.html != null) {
+            long t0 = System.nanoTime();
+            new AstHtml().gerarHtml(statements, op.html);
+            if (timings) tempo("HTML da AST", t0, System.nanoTime(), op.html);
+        }
 
-            System.out.println("\n--------- BYTECODE GERADO ---------");
-            Debug.disassembleChunk(chunk, "Código do Programa");
-            System.out.println("-----------------------------------\n");
+        //Compilação (AST -> Bytecode), se a VM ou a desmontagem pedirem
+        Chunk chunk = null;
+        if (engine.equals("vm") || op.disasm) {
+            long t0 = System.nanoTime();
+            chunk = new Compiler(diagnostics).compile(statements);
+            if (timings) tempo("compilação", t0, System.nanoTime(), null);
+            if (chunk == null) return 1;
 
-            //Execução (VM lê o Bytecode)
+            if (op.disasm) {
+                Debug.disassembleChunk(chunk, caminhoPrograma);
+            }
+        }
+
+        //Execução
+        OutputSink saida;
+        if (op.saida != null) {
+            try {
+                saida = OutputSink.toFile(Paths.get(op.saida));
+            } catch (IOException e) {
+                System.err.println("Erro ao criar o arquivo de saída: " + e.getMessage());
+                return 1;
+            }
+        } else {
+            saida = OutputSink.stdout();
+        }
+        saida.setFlushOnNewline(op.porLinha != null ? op.porLinha : op.saida == null && System.console() != null);
+        ExecutionBudget budget = ExecutionBudget.of(op.fuel, Duration.ofMillis(op.timeoutMs), op.maxAlloc);
+        long t0 = System.nanoTime();
+        boolean ok;
+        if (engine.equals("vm")) {
             VM vm = new VM();
-            System.out.println("\n--------- EXECUÇÃO DA VM ---------");
-            vm.interpret(chunk);
+            vm.getContext().setOutput(saida);
+            vm.getContext().setBudget(budget);
+            Profiler profiler = op.perfil != null ? new Profiler(op.intervaloPerfil) : null;
+            OpcodeHistogram histograma = op.histograma ? new OpcodeHistogram(op.tempoOpcodes) : null;
+            vm.getContext().setProbe(Probe.both(profiler, histograma));
+            ok = vm.interpret(chunk);
+            if (histograma != null) salvarHistograma(histograma, op);
+            if (profiler != null) {
+                profiler.close();
+                salvarPerfil(profiler, op);
+            }
+        } else {
+            Interpreter interpreter = new Interpreter();
+            interpreter.setOutput(saida);
+            interpreter.setBudget(budget);
+            ok = interpreter.interpret(statements);
+        }
+        if (op.saida != null) {
+            saida.close();
+            if (saida.checkError()) {
+                System.err.println("Erro ao gravar o arquivo de saída: " + op.saida);
+                ok = false;
+            }
+        }
+        if (timings) {
+            long fim = System.nanoTime();
+            tempo("execução (" + engine + ")", t0, fim, null);
+            tempo("total", inicio, fim, null);
+        }
+        return ok ? 0 : 1;
+    }
 
+    // Relatório por linha no stderr e pilhas colapsadas (para flame graph) no arquivo pedido
+    private static void salvarPerfil(Profiler profiler, Opcoes op) {
+        try {
+            String fonte = new String(Files.readAllBytes(Paths.get(op.programa)), StandardCharsets.UTF_8);
+            profiler.writeReport(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), fonte);
+            try (Writer arquivo = Files.newBufferedWriter(Paths.get(op.perfil), StandardCharsets.UTF_8)) {
+                profiler.writeCollapsed(arquivo);
+            }
+            System.err.println("Pilhas colapsadas salvas em: " + op.perfil);
         } catch (IOException e) {
-            System.err.println("Erro ao ler o arquivo do programa: " + e.getMessage());
-        } catch (Exception e) {
-            System.err.println("Erro inesperado: " + e.getMessage());
-            e.printStackTrace();
+            System.err.println("Erro ao salvar o perfil: " + e.getMessage());
+        }
+    }
+
+    // Histograma em texto no stderr e, se pedido, em JSON no arquivo
+    private static void salvarHistograma(OpcodeHistogram histograma, Opcoes op) {
+        try {
+            histograma.writeText(new OutputStreamWriter(System.err, StandardCharsets.UTF_8));
+            if (op.histogramaJson != null) {
+                try (Writer arquivo = Files.newBufferedWriter(Paths.get(op.histogramaJson), StandardCharsets.UTF_8)) {
+                    histograma.writeJson(arquivo);
+                }
+                System.err.println("Histograma de opcodes salvo em: " + op.histogramaJson);
+            }
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar o histograma de opcodes: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private static void tempo(String etapa, long inicio, long fim, String detalhe) {
+        String texto = String.format(Locale.ROOT, "[tempo] %-30s %9.3f ms", etapa, (fim - inicio) / 1e6);
+        if (detalhe != null) texto += "  (" + detalhe + ")";
+        System.err.println(texto);
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import Lexica.Token;
+import Sintatica.IncrementalParser;
+import Utils.AstHtml;
+import Utils.Diagnostics;
+
+// Teste da reanálise incremental: java Reanalise <diretório|script.cpqp>...
+// Cada script passa por uma sequência de edições (cada dígito trocado por outro, depois uma linha em branco
+// inserida antes de cada quebra de linha), aplicadas uma após a outra no mesmo Result. Depois de cada edição
+// os tokens (tipo, lexema, posição), a AST e os erros têm que ser iguais aos de uma análise completa do
+// fonte novo. Os scripts podem ter erros de sintaxe ou léxicos (é o que corpus/reanalise/ exercita).
+// Sai com 1 se alguma edição divergir.
+public class Reanalise {
+
+    private static final String USO = "Uso: java Reanalise <diretório|script.cpqp>...\n";
+
+    public static void main(String[] args) throws IOException {
+        List<Path> scripts = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                System.err.println("Argumento inválido: " + arg);
+                System.err.print(USO);
+                System.exit(2);
+            }
+            adicionar(Paths.get(arg), scripts);
+        }
+        if (scripts.isEmpty()) {
+            System.err.print(USO);
+            System.exit(2);
+        }
+
+        int falhas = 0;
+        for (Path script : scripts) {
+            if (!verificar(script)) falhas++;
+        }
+        System.out.println();
+        System.out.println(scripts.size() + " script(s), " + falhas + " divergência(s)");
+        System.exit(falhas == 0 ? 0 : 1);
+    }
+
+    private static void adicionar(Path caminho, List<Path> scripts) throws IOException {
+        if (!Files.isDirectory(caminho)) {
+            scripts.add(caminho);
+            return;
+        }
+        try (Stream<Path> arquivos = Files.list(caminho)) {
+            arquivos.filter(p -> p.toString().endsWith(".cpqp")).sorted().forEach(scripts::add);
+        }
+    }
+
+    // Aplica as edições em sequência e compara cada resultado com a análise completa; false na primeira diferença
+    private static boolean verificar(Path script) throws IOException {
+        String nome = script.getFileName().toString();
+        String fonte = new String(Files.readAllBytes(script), StandardCharsets.UTF_8);
+        IncrementalParser.Result atual = IncrementalParser.parse(fonte);
+        int edicoes = 0;
+
+        for (int i = 0; i < atual.source.length(); i++) {
+            char c = atual.source.charAt(i);
+            if (c < '0' || c > '9') continue;
+            atual = IncrementalParser.edit(atual, i, i + 1, c == '7' ? "8" : "7");
+            edicoes++;
+            if (!conferir(nome, atual, "dígito na posição " + i)) return false;
+        }
+        // De trás para frente: as posições ainda não visitadas não mudam com a inserção
+        for (int i = atual.source.length() - 1; i >= 0; i--) {
+            if (atual.source.charAt(i) != '\n') continue;
+            atual = IncrementalParser.edit(atual, i, i, "\n");
+            edicoes++;
+            if (!conferir(nome, atual, "linha inserida na posição " + i)) return false;
+        }
+        System.out.println(String.format("%-28s %8s  (%d edições, %d erro(s) no fim)",
+                nome, "ok", edicoes, atual.diagnostics.count()));
+        return true;
+    }
+
+    private static boolean conferir(String nome, IncrementalParser.Result incremental, String edicao) {
+        IncrementalParser.Result completo = IncrementalParser.parse(incremental.source);
+        String diferenca;
+        if (!tokens(incremental.tokens).equals(tokens(completo.tokens))) {
+            diferenca = "tokens";
+        } else if (!ast(incremental).equals(ast(completo))) {
+            diferenca = "AST";
+        } else if (!erros(incremental.diagnostics).equals(erros(completo.diagnostics))) {
+            diferenca = "erros";
+        } else {
+            return true;
+        }
+        System.out.println(String.format("%-28s %8s", nome, "DIVERGE"));
+        System.out.println("    " + diferenca + " diferentes depois da edição (" + edicao + ")");
+        if (diferenca.equals("erros")) {
+            System.out.println("    incremental: " + erros(incremental.diagnostics));
+            System.out.println("    completa:    " + erros(completo.diagnostics));
+        }
+        return false;
+    }
+
+    private static List<String> tokens(List<Token> tokens) {
+        List<String> texto = new ArrayList<>(tokens.size());
+        for (Token token : tokens) texto.add(token.toString());
+        return texto;
+    }
+
+    private static String ast(IncrementalParser.Result result) {
+        StringWriter html = new StringWriter();
+        try {
+            new AstHtml().write(result.statements, html);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return html.toString();
+    }
+
+    // Linha, posição e texto de cada erro, na ordem do fonte
+    private static List<String> erros(Diagnostics diagnostics) {
+        List<Diagnostics.Diagnostic> todos = new ArrayList<>(diagnostics.getAll());
+        todos.sort((a, b) -> Integer.compare(a.column, b.column));
+        List<String> texto = new ArrayList<>(todos.size());
+        for (Diagnostics.Diagnostic erro : todos) texto.add(erro.line + ":" + erro.column + " " + erro);
+        return texto;
+    }
+}
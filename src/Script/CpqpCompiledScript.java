@@ -0,0 +1,99 @@
+package Script;
+
+import ByteCode.ExecutionContext;
+import ByteCode.VM;
+import ByteCode.VMPool;
+import Lexica.SymbolTable;
+import Utils.PipelineEvents;
+import Utils.Rope;
+import java.util.Map;
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+// Script já compilado: cada eval só pega um contexto de execução do pool, carrega o Bindings nas globais e executa o chunk.
+// O Chunk é imutável, então a mesma instância pode rodar em várias threads ao mesmo tempo.
+public class CpqpCompiledScript extends CompiledScript {
+
+    private final CpqpScriptEngine engine;
+    final Programa programa;
+
+    CpqpCompiledScript(CpqpScriptEngine engine, Programa programa) {
+        this.engine = engine;
+        this.programa = programa;
+    }
+
+    @Override
+    public Object eval(ScriptContext context) throws ScriptException {
+        VMPool pool = engine.pool();
+        ExecutionContext execution = newExecution(pool, programa.symbols, context);
+        String anterior = PipelineEvents.enterScript(fileName(context));
+        try {
+            boolean ok = VM.execute(programa.chunk, execution);
+            exportGlobals(programa.symbols, execution, context.getBindings(ScriptContext.ENGINE_SCOPE));
+            if (!ok) throw new ScriptException(execution.getLastError(), fileName(context), -1);
+        } finally {
+            PipelineEvents.exitScript(anterior);
+            pool.release(execution);
+        }
+        return null; // Um programa Codes Pqp não tem valor de resultado
+    }
+
+    @Override
+    public ScriptEngine getEngine() {
+        return engine;
+    }
+
+    // Contexto do pool com a entrada/saída do ScriptContext e as variáveis dos Bindings já nas globais
+    static ExecutionContext newExecution(VMPool pool, SymbolTable symbols, ScriptContext context) {
+        ExecutionContext execution = pool.borrow(context.getReader(), context.getWriter(), context.getErrorWriter());
+        // GLOBAL_SCOPE primeiro: o ENGINE_SCOPE tem prioridade em nomes repetidos
+        importBindings(symbols, execution, context.getBindings(ScriptContext.GLOBAL_SCOPE));
+        importBindings(symbols, execution, context.getBindings(ScriptContext.ENGINE_SCOPE));
+        return execution;
+    }
+
+    private static void importBindings(SymbolTable symbols, ExecutionContext execution, Bindings bindings) {
+        if (bindings == null) return;
+        for (Map.Entry<String, Object> entry : bindings.entrySet()) {
+            // Nome que o script nunca menciona não tem slot: não há por que carregá-lo
+            int slot = symbols.lookup(entry.getKey());
+            if (slot >= 0) execution.setGlobal(slot, toScript(entry.getValue()));
+        }
+    }
+
+    // As globais definidas pelo script voltam para o Bindings (VARs, funções, LEAI...)
+    static void exportGlobals(SymbolTable symbols, ExecutionContext execution, Bindings bindings) {
+        int count = Math.min(execution.globalCount(), symbols.size());
+        for (int slot = 0; slot < count; slot++) {
+            if (execution.isDefined(slot)) {
+                bindings.put(symbols.name(slot), toJava(execution.getGlobal(slot)));
+            }
+        }
+    }
+
+    // A VM só conhece Integer, Double, Boolean, String (ou Rope), Funcao e null
+    static Object toScript(Object value) {
+        if (value instanceof Integer || value instanceof Double) return value;
+        if (value instanceof Byte || value instanceof Short) return ((Number) value).intValue();
+        if (value instanceof Long) {
+            long l = (Long) value;
+            return (l == (int) l) ? (Object) (int) l : (Object) (double) l;
+        }
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        if (value instanceof Character) return value.toString();
+        if (value instanceof CharSequence && !(value instanceof Rope)) return value.toString();
+        return value;
+    }
+
+    static Object toJava(Object value) {
+        return (value instanceof Rope) ? value.toString() : value;
+    }
+
+    static String fileName(ScriptContext context) {
+        Object name = context.getAttribute(ScriptEngine.FILENAME);
+        return name != null ? name.toString() : null;
+    }
+}
@@ -0,0 +1,133 @@
+package Script;
+
+import ByteCode.ExecutionContext;
+import ByteCode.Funcao;
+import ByteCode.VM;
+import ByteCode.VMPool;
+import Lexica.SymbolTable;
+import Utils.PipelineEvents;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.lang.reflect.Proxy;
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.Invocable;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+// Codes Pqp embutida via javax.script, rodando na VM de bytecode.
+// eval(String) passa pelo cache de compilação da fábrica: reavaliar o mesmo fonte custa só a execução.
+// As variáveis do Bindings viram globais do script, e as globais definidas pelo script voltam para ele.
+public class CpqpScriptEngine extends AbstractScriptEngine implements Compilable, Invocable {
+
+    private final CpqpScriptEngineFactory factory;
+
+    CpqpScriptEngine(CpqpScriptEngineFactory factory) {
+        this.factory = factory;
+    }
+
+    public CpqpScriptEngine() {
+        this(new CpqpScriptEngineFactory());
+    }
+
+    @Override
+    public Object eval(String script, ScriptContext context) throws ScriptException {
+        return compile(script, context).eval(context);
+    }
+
+    @Override
+    public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+        return eval(readAll(reader), context);
+    }
+
+    @Override
+    public CompiledScript compile(String script) throws ScriptException {
+        return compile(script, context);
+    }
+
+    @Override
+    public CompiledScript compile(Reader script) throws ScriptException {
+        return compile(readAll(script));
+    }
+
+    private CpqpCompiledScript compile(String script, ScriptContext context) throws ScriptException {
+        return new CpqpCompiledScript(this, factory.compilar(script, CpqpCompiledScript.fileName(context)));
+    }
+
+    VMPool pool() {
+        return factory.pool;
+    }
+
+    @Override
+    public Object invokeFunction(String name, Object... args) throws ScriptException, NoSuchMethodException {
+        Object value = context.getAttribute(name);
+        // A função roda com a numeração de globais do programa que a compilou, não a do último eval
+        SymbolTable symbols = value instanceof Funcao ? Programa.simbolosDe((Funcao) value) : null;
+        if (symbols == null) {
+            throw new NoSuchMethodException("Função não definida: " + name);
+        }
+        Funcao funcao = (Funcao) value;
+        Object[] scriptArgs = new Object[args == null ? 0 : args.length];
+        for (int i = 0; i < scriptArgs.length; i++) scriptArgs[i] = CpqpCompiledScript.toScript(args[i]);
+
+        VMPool pool = pool();
+        ExecutionContext execution = CpqpCompiledScript.newExecution(pool, symbols, context);
+        String anterior = PipelineEvents.enterScript(CpqpCompiledScript.fileName(context));
+        try {
+            if (!VM.invoke(funcao, scriptArgs, execution)) {
+                throw new ScriptException(execution.getLastError(), CpqpCompiledScript.fileName(context), -1);
+            }
+            CpqpCompiledScript.exportGlobals(symbols, execution, context.getBindings(ScriptContext.ENGINE_SCOPE));
+            return CpqpCompiledScript.toJava(execution.getResult());
+        } finally {
+            PipelineEvents.exitScript(anterior);
+            pool.release(execution);
+        }
+    }
+
+    @Override
+    public Object invokeMethod(Object thiz, String name, Object... args) throws ScriptException, NoSuchMethodException {
+        throw new UnsupportedOperationException("Codes Pqp não tem objetos; use invokeFunction");
+    }
+
+    // Cada método da interface chama a função do script com o mesmo nome
+    @Override
+    public <T> T getInterface(Class<T> clasz) {
+        if (clasz == null || !clasz.isInterface()) {
+            throw new IllegalArgumentException("Esperada uma interface: " + clasz);
+        }
+        Object proxy = Proxy.newProxyInstance(clasz.getClassLoader(), new Class<?>[]{clasz},
+                (p, method, args) -> invokeFunction(method.getName(), args));
+        return clasz.cast(proxy);
+    }
+
+    @Override
+    public <T> T getInterface(Object thiz, Class<T> clasz) {
+        throw new UnsupportedOperationException("Codes Pqp não tem objetos; use getInterface(Class)");
+    }
+
+    @Override
+    public Bindings createBindings() {
+        return new SimpleBindings();
+    }
+
+    @Override
+    public ScriptEngineFactory getFactory() {
+        return factory;
+    }
+
+    private static String readAll(Reader reader) throws ScriptException {
+        StringWriter text = new StringWriter();
+        try {
+            reader.transferTo(text);
+        } catch (IOException e) {
+            throw new ScriptException(e);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,120 @@
+package Script;
+
+import ByteCode.VMPool;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+
+// Ponto de entrada do javax.script: registrado em META-INF/services, então
+// new ScriptEngineManager().getEngineByName("cpqp") já encontra a linguagem.
+public class CpqpScriptEngineFactory implements ScriptEngineFactory {
+
+    private static final int CACHE_SIZE = 64;
+
+    // Cache de compilação por código-fonte, compartilhado pelos engines desta fábrica:
+    // o mesmo script avaliado a cada requisição só é analisado e compilado uma vez (LRU por acesso).
+    private final Map<String, Programa> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Programa> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    // Contextos de execução reaproveitados entre os evals de todos os engines desta fábrica
+    final VMPool pool = new VMPool(2 * Runtime.getRuntime().availableProcessors());
+
+    Programa compilar(String source, String fileName) throws ScriptException {
+        synchronized (cache) {
+            Programa programa = cache.get(source);
+            if (programa != null) return programa;
+        }
+        // Compila fora do lock; se duas threads compilarem o mesmo fonte, fica o primeiro resultado
+        Programa programa = Programa.compilar(source, fileName);
+        synchronized (cache) {
+            Programa existente = cache.putIfAbsent(source, programa);
+            return existente != null ? existente : programa;
+        }
+    }
+
+    @Override
+    public String getEngineName() {
+        return "Codes Pqp VM";
+    }
+
+    @Override
+    public String getEngineVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public List<String> getExtensions() {
+        return Collections.singletonList("cpqp");
+    }
+
+    @Override
+    public List<String> getMimeTypes() {
+        return Collections.singletonList("application/x-cpqp");
+    }
+
+    @Override
+    public List<String> getNames() {
+        return List.of("cpqp", "codespqp", "CodesPqp");
+    }
+
+    @Override
+    public String getLanguageName() {
+        return "CodesPqp";
+    }
+
+    @Override
+    public String getLanguageVersion() {
+        return "1.0";
+    }
+
+    @Override
+    public Object getParameter(String key) {
+        switch (key) {
+            case ScriptEngine.ENGINE: return getEngineName();
+            case ScriptEngine.ENGINE_VERSION: return getEngineVersion();
+            case ScriptEngine.NAME: return getNames().get(0);
+            case ScriptEngine.LANGUAGE: return getLanguageName();
+            case ScriptEngine.LANGUAGE_VERSION: return getLanguageVersion();
+            // Cada eval roda numa VM própria; só o Bindings é compartilhado entre threads
+            case "THREADING": return "MULTITHREADED";
+            default: return null;
+        }
+    }
+
+    @Override
+    public String getMethodCallSyntax(String obj, String m, String... args) {
+        // A linguagem não tem objetos: o melhor equivalente é chamar a função passando o "objeto"
+        StringBuilder sb = new StringBuilder(m).append('(').append(obj);
+        for (String arg : args) sb.append(", ").append(arg);
+        return sb.append(')').toString();
+    }
+
+    @Override
+    public String getOutputStatement(String toDisplay) {
+        return "ESCREVEAI \"" + toDisplay.replace("\"", "'") + "\";";
+    }
+
+    @Override
+    public String getProgram(String... statements) {
+        StringBuilder sb = new StringBuilder();
+        for (String statement : statements) {
+            sb.append(statement);
+            if (!statement.trim().endsWith(";") && !statement.trim().endsWith("}")) sb.append(';');
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public ScriptEngine getScriptEngine() {
+        return new CpqpScriptEngine(this);
+    }
+}
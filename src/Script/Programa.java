@@ -0,0 +1,72 @@
+package Script;
+
+import ByteCode.Chunk;
+import ByteCode.Compiler;
+import ByteCode.Funcao;
+import Lexica.Scanner;
+import Lexica.SymbolTable;
+import Sintatica.Parser;
+import Sintatica.Stmt;
+import Utils.Diagnostics;
+import Utils.PipelineEvents;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.script.ScriptException;
+
+// Resultado da compilação de um fonte: o bytecode e a tabela de símbolos que numerou as globais.
+// Nada aqui muda depois de compilado, então o mesmo Programa roda em várias VMs ao mesmo tempo.
+final class Programa {
+    // Tabela de símbolos do programa que compilou cada função. Uma Funcao que ficou no Bindings usa a
+    // numeração de globais desse programa, mesmo que outro eval tenha vindo depois. As chaves são fracas:
+    // a entrada some junto com a função (a SymbolTable não aponta de volta para ela).
+    private static final Map<Funcao, SymbolTable> DONOS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    final Chunk chunk;
+    final SymbolTable symbols; // Nome da variável no Bindings -> slot da global na VM
+
+    private Programa(Chunk chunk, SymbolTable symbols) {
+        this.chunk = chunk;
+        this.symbols = symbols;
+    }
+
+    static Programa compilar(String source, String fileName) throws ScriptException {
+        // Os erros viram ScriptException; nada é impresso no stderr do hospedeiro
+        Diagnostics diagnostics = Diagnostics.silent();
+        SymbolTable symbols = new SymbolTable();
+        Chunk chunk;
+        String anterior = PipelineEvents.enterScript(fileName);
+        try {
+            Parser parser = new Parser(new Scanner(source, symbols, diagnostics));
+            List<Stmt> statements = parser.parse();
+            chunk = diagnostics.hasErrors() ? null : new Compiler(diagnostics).compile(statements);
+        } finally {
+            PipelineEvents.exitScript(anterior);
+        }
+        if (chunk == null) {
+            Diagnostics.Diagnostic first = diagnostics.getAll().get(0);
+            String message = first.toString();
+            if (diagnostics.count() > 1) message += " (+" + (diagnostics.count() - 1) + " erro(s))";
+            throw new ScriptException(message, fileName, first.line);
+        }
+        registrar(chunk, symbols);
+        return new Programa(chunk, symbols);
+    }
+
+    // Tabela de símbolos do programa que compilou a função (null se não veio de um Programa)
+    static SymbolTable simbolosDe(Funcao funcao) {
+        return DONOS.get(funcao);
+    }
+
+    // As funções são constantes do chunk que as declara, inclusive as declaradas dentro de outras
+    private static void registrar(Chunk chunk, SymbolTable symbols) {
+        for (int i = 0; i < chunk.constantCount(); i++) {
+            if (chunk.constant(i) instanceof Funcao) {
+                Funcao funcao = (Funcao) chunk.constant(i);
+                DONOS.put(funcao, symbols);
+                registrar(funcao.chunk, symbols);
+            }
+        }
+    }
+}
@@ -6,10 +6,12 @@ import Lexica.TokenType;
 import Sintatica.Expr;
 import Sintatica.Parser;
 import Sintatica.Stmt;
+import Utils.ExecutionBudget;
+import Utils.OutputSink;
+import Utils.PipelineEvents;
+import Utils.Rope;
 
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 
 // Classe responsável por interpretar as expressões e comandos da linguagem.
 public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
@@ -20,14 +22,48 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     // Leitor de entrada padrão
     private final java.util.Scanner consoleInput = new java.util.Scanner(System.in);
 
-    public void interpret(List<Stmt> statements) {
+    // Saída do ESCREVEAI: bufferizada, descarregada no LEAI, antes de um erro e no fim da execução
+    private OutputSink out = OutputSink.stdout();
+
+    // Limite de passos/tempo: conferido a cada volta de VOLTAINFINITA e a cada chamada de função
+    private ExecutionBudget budget = ExecutionBudget.UNLIMITED;
+    private final ExecutionBudget.Meter meter = new ExecutionBudget.Meter();
+
+    public void setBudget(ExecutionBudget budget) {
+        this.budget = budget;
+    }
+
+    // Troca a saída do ESCREVEAI (ex: um arquivo, um buffer em memória)
+    public void setOutput(OutputSink out) {
+        this.out = out;
+    }
+
+    // Retorna false se a execução parou por erro
+    public boolean interpret(List<Stmt> statements) {
+        PipelineEvents.ExecutionEvent event = new PipelineEvents.ExecutionEvent();
+        event.begin();
+        meter.start(budget);
+        boolean ok = false;
         try {
             for (Stmt statement : statements) {
                 execute(statement);
             }
+            ok = true;
         } catch (RuntimeException error) {
+            out.flush();
             System.err.println("Erro de execução: " + error.getMessage());
         }
+        out.flush();
+        if (event.shouldCommit()) {
+            event.script = PipelineEvents.scriptName();
+            event.engine = "tree";
+            event.statements = statements.size();
+            event.steps = meter.used();
+            event.allocatedBytes = meter.allocated;
+            event.success = ok;
+            event.commit();
+        }
+        return ok;
     }
 
     private Object evaluate(Expr expr) {
@@ -59,27 +95,39 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
         switch (expr.operator.type) {
             case PLUS:
+                if (Rope.isString(left) || Rope.isString(right)) {
+                    // Conta o texto antes de criá-lo: um '+' em laço não chega a estourar o heap
+                    CharSequence l = text(left);
+                    CharSequence r = text(right);
+                    if (!meter.allocate(Rope.concatBytes(l, r))) throw new ExecutionBudget.ExhaustedException(meter.message());
+                    return Rope.concat(l, r);
+                }
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (left instanceof Integer && right instanceof Integer) return (Integer) left + (Integer) right;
                 if (left instanceof Double && right instanceof Double) return (Double) left + (Double) right;
                 if (left instanceof Integer && right instanceof Double) return (Integer) left + (Double) right;
                 if (left instanceof Double && right instanceof Integer) return (Double) left + (Integer) right;
-                if (left instanceof String || right instanceof String) return stringify(left) + stringify(right);
                 throw new RuntimeException("Operadores '+' exigem números ou strings.");
             case MINUS:
                 checkNumberOperands(expr.operator, left, right);
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (left instanceof Integer && right instanceof Integer) return (Integer) left - (Integer) right;
                 return toDouble(left) - toDouble(right);
             case STAR:
                 checkNumberOperands(expr.operator, left, right);
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (left instanceof Integer && right instanceof Integer) return (Integer) left * (Integer) right;
                 return toDouble(left) * toDouble(right);
             case SLASH:
                 checkNumberOperands(expr.operator, left, right);
                 if (toDouble(right) == 0) throw new RuntimeException("Divisão por zero.");
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (left instanceof Integer && right instanceof Integer) return (Integer) left / (Integer) right;
                 return toDouble(left) / toDouble(right);
             case PERCENT:
                 checkNumberOperands(expr.operator, left, right);
+                if (toDouble(right) == 0) throw new RuntimeException("Divisão por zero.");
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (left instanceof Integer && right instanceof Integer) return (Integer) left % (Integer) right;
                 return toDouble(left) % toDouble(right);
             case GREATER:
@@ -123,6 +171,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         switch (expr.operator.type) {
             case MINUS:
                 checkNumberOperand(expr.operator, right);
+                meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
                 if (right instanceof Integer) return -(Integer) right;
                 return -(Double) right;
             case BANG:
@@ -161,6 +210,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             throw new RuntimeException("Esperado " + function.arity() + " argumentos, mas obteve " + arguments.size() + ".");
         }
 
+        if (!meter.consume()) throw new ExecutionBudget.ExhaustedException(meter.message());
+
         return function.call(this, arguments);
     }
 
@@ -169,6 +220,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitIncrementoExpr(Expr.Incremento expr) {
         Object value = environment.get(expr.name);
+        meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
 
         if (value instanceof Integer) {
             int num = (Integer) value;
@@ -195,6 +247,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Object visitDecrementoExpr(Expr.Decremento expr) {
         Object value = environment.get(expr.name);
+        meter.allocated += ExecutionBudget.BOXED_NUMBER_BYTES;
 
         if (value instanceof Integer) {
             int num = (Integer) value;
@@ -235,7 +288,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitFunctionStmt(Stmt.Function stmt) {
         LoxFunction function = new LoxFunction(stmt, environment);
-        environment.define(stmt.name.lexeme, function);
+        environment.define(stmt.name, function);
         return null;
     }
 
@@ -252,7 +305,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     @Override
     public Void visitPrintStmt(Stmt.Print stmt) {
         Object value = evaluate(stmt.expression);
-        System.out.println(stringify(value));
+        out.writeLine(value);
         return null;
     }
 
@@ -269,7 +322,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         if (stmt.initializer != null) {
             value = evaluate(stmt.initializer);
         }
-        environment.define(stmt.name.lexeme, value);
+        environment.define(stmt.name, value);
         return null;
     }
 
@@ -281,6 +334,8 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
             } catch (BreakException e) {
                 break;
             }
+            // Cobra a volta depois do corpo, no mesmo ponto do OP_LOOP da VM
+            if (!meter.consume()) throw new ExecutionBudget.ExhaustedException(meter.message());
         }
         return null;
     }
@@ -320,9 +375,11 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
 
     @Override
     public Void visitInputStmt(Stmt.Input stmt) {
-        System.out.print("> ");
+        out.write("> ");
+        out.flush();
         if (consoleInput.hasNextLine()) {
             String line = consoleInput.nextLine();
+            if (!meter.allocate(2L * line.length() + 40)) throw new ExecutionBudget.ExhaustedException(meter.message());
             Object valor;
             try {
                 valor = Integer.parseInt(line);
@@ -365,9 +422,16 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     private boolean isEqual(Object a, Object b) {
         if (a == null && b == null) return true;
         if (a == null) return false;
+        if (Rope.isString(a) && Rope.isString(b)) return Rope.textEquals(a, b);
         return a.equals(b);
     }
 
+    // Operando de '+' como texto: Ropes seguem sem achatar para a concatenação continuar linear
+    private CharSequence text(Object object) {
+        if (object instanceof Rope) return (Rope) object;
+        return stringify(object);
+    }
+
     private String stringify(Object object) {
         if (object == null) return "nulo";
         if (object instanceof Double) {
@@ -413,7 +477,7 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
         public Object call(Interpreter interpreter, List<Object> arguments) {
             Environment environment = new Environment(closure);
             for (int i = 0; i < declaration.parameters.size(); i++) {
-                environment.define(declaration.parameters.get(i).lexeme, arguments.get(i));
+                environment.define(declaration.parameters.get(i), arguments.get(i));
             }
             try {
                 interpreter.executeBlock(declaration.body, environment);
@@ -425,47 +489,29 @@ public class Interpreter implements Expr.Visitor<Object>, Stmt.Visitor<Void> {
     }
 
     public static class Environment {
-        final Map<String, Object> values = new HashMap<>();
+        final SymbolMap values = new SymbolMap(); // Chave: ID do símbolo (Token.symbol)
         final Environment enclosing;
 
         Environment() { enclosing = null; }
         Environment(Environment enclosing) { this.enclosing = enclosing; }
 
         Object get(Token name) {
-            if (values.containsKey(name.lexeme)) {
-                return values.get(name.lexeme);
+            for (Environment env = this; env != null; env = env.enclosing) {
+                Object value = env.values.get(name.symbol);
+                if (value != SymbolMap.MISSING) return value;
             }
-            if (enclosing != null) return enclosing.get(name);
             throw new RuntimeException("Variável indefinida '" + name.lexeme + "'.");
         }
 
         void assign(Token name, Object value) {
-            if (values.containsKey(name.lexeme)) {
-                values.put(name.lexeme, value);
-                return;
-            }
-            if (enclosing != null) {
-                enclosing.assign(name, value);
-                return;
+            for (Environment env = this; env != null; env = env.enclosing) {
+                if (env.values.replace(name.symbol, value)) return;
             }
             throw new RuntimeException("Variável indefinida '" + name.lexeme + "'.");
         }
 
-        // Sobrecarga para aceitar lexeme direto (para Incremento/Decremento)
-        void assign(String name, Object value) {
-            if (values.containsKey(name)) {
-                values.put(name, value);
-                return;
-            }
-            if (enclosing != null) {
-                enclosing.assign(name, value);
-                return;
-            }
-            throw new RuntimeException("Variável indefinida '" + name + "'.");
-        }
-
-        void define(String name, Object value) {
-            values.put(name, value);
+        void define(Token name, Object value) {
+            values.put(name.symbol, value);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+package Semantica;
+
+// Mapa de endereçamento aberto com chave int (ID da SymbolTable) usado pelos escopos do Interpreter.
+// Evita boxing da chave e a comparação de Strings que o HashMap<String, Object> fazia a cada acesso.
+final class SymbolMap {
+    // Valor devolvido por get() quando a chave não existe (o valor nulo da linguagem é um valor válido)
+    static final Object MISSING = new Object();
+
+    private int[] keys = new int[8];        // ID + 1 (0 = vazio)
+    private Object[] values = new Object[8];
+    private int size = 0;
+
+    Object get(int symbol) {
+        int mask = keys.length - 1;
+        int index = mix(symbol) & mask;
+        while (true) {
+            int key = keys[index];
+            if (key == 0) return MISSING;
+            if (key == symbol + 1) return values[index];
+            index = (index + 1) & mask;
+        }
+    }
+
+    // Atualiza a chave se ela existir; retorna false caso contrário
+    boolean replace(int symbol, Object value) {
+        int mask = keys.length - 1;
+        int index = mix(symbol) & mask;
+        while (true) {
+            int key = keys[index];
+            if (key == 0) return false;
+            if (key == symbol + 1) {
+                values[index] = value;
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    void put(int symbol, Object value) {
+        int mask = keys.length - 1;
+        int index = mix(symbol) & mask;
+        while (true) {
+            int key = keys[index];
+            if (key == 0) break;
+            if (key == symbol + 1) {
+                values[index] = value;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = symbol + 1;
+        values[index] = value;
+        if (++size * 2 > keys.length) grow();
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0) continue;
+            int index = mix(oldKeys[i] - 1) & mask;
+            while (keys[index] != 0) index = (index + 1) & mask;
+            keys[index] = oldKeys[i];
+            values[index] = oldValues[i];
+        }
+    }
+
+    private static int mix(int symbol) {
+        int h = symbol * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,223 @@
+package Sintatica;
+
+import Lexica.Scanner;
+import Lexica.SymbolTable;
+import Lexica.Token;
+import Lexica.TokenSource;
+import Utils.Diagnostics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+// Reanálise incremental para editor/watch mode. Depois de uma edição, re-lexa só a partir da declaração
+// de nível superior afetada, reanalisa declarações até os tokens voltarem a coincidir com os antigos
+// numa fronteira de declaração, e reaproveita o resto (tokens e subárvores Stmt) deslocando as posições.
+public class IncrementalParser {
+
+    // Resultado de uma análise: fonte, tokens, AST e erros (nada é impresso: quem chama decide como mostrar),
+    // mais as fronteiras das declarações de nível superior.
+    // Um Result passado para edit() é consumido: os tokens reaproveitados passam a ter as posições novas.
+    public static final class Result {
+        public final String source;
+        public final List<Token> tokens;
+        public final List<Stmt> statements;
+        public final Diagnostics diagnostics; // Erros léxicos e sintáticos do fonte inteiro, na ordem do fonte
+        final SymbolTable symbols;
+        final int[] unitStarts; // Índice do primeiro token de cada declaração (ou trecho com erro)
+        final Stmt[] units;     // Declaração de cada trecho (null se teve erro de sintaxe)
+
+        Result(String source, List<Token> tokens, Diagnostics diagnostics, SymbolTable symbols,
+               int[] unitStarts, Stmt[] units) {
+            this.source = source;
+            this.tokens = tokens;
+            this.diagnostics = diagnostics;
+            this.symbols = symbols;
+            this.unitStarts = unitStarts;
+            this.units = units;
+            List<Stmt> statements = new ArrayList<>();
+            for (Stmt unit : units) {
+                if (unit != null) statements.add(unit);
+            }
+            this.statements = statements;
+        }
+    }
+
+    // Análise completa inicial
+    public static Result parse(String source) {
+        SymbolTable symbols = new SymbolTable();
+        Diagnostics diagnostics = Diagnostics.silent();
+        List<Token> tokens = new Scanner(source, symbols, diagnostics).scanTokens();
+        Parser parser = new Parser(tokens, diagnostics);
+        List<Integer> starts = new ArrayList<>();
+        List<Stmt> units = new ArrayList<>();
+        while (!parser.isAtEnd()) {
+            starts.add(parser.position());
+            units.add(parser.declarationOrRecover());
+        }
+        return new Result(source, tokens, diagnostics, symbols, toArray(starts), units.toArray(new Stmt[0]));
+    }
+
+    // Aplica a edição "substituir [from, to) do fonte por 'text'" e reanalisa só o necessário
+    public static Result edit(Result previous, int from, int to, String text) {
+        String old = previous.source;
+        if (from < 0 || to < from || to > old.length()) {
+            throw new IllegalArgumentException("Edição fora do fonte: [" + from + ", " + to + ")");
+        }
+        String source = old.substring(0, from) + text + old.substring(to);
+        int delta = text.length() - (to - from);
+        if (previous.units.length == 0) return parse(source);
+
+        // Primeira declaração afetada: a última que começa antes da edição (se a edição encosta no início de
+        // uma declaração, o token dela pode se juntar ao texto novo). Volta mais uma, porque o fim de uma
+        // declaração depende do primeiro token da seguinte (SE sem SENAO, recuperação de erro).
+        List<Token> oldTokens = previous.tokens;
+        int first = 0;
+        for (int i = previous.units.length - 1; i >= 0; i--) {
+            if (oldTokens.get(previous.unitStarts[i]).getColumn() < from) {
+                first = Math.max(0, i - 1);
+                break;
+            }
+        }
+        int firstToken = previous.unitStarts[first];
+        int anchorColumn = 0;
+        int anchorLine = 1;
+        if (first > 0) {
+            // Token.getLine() é a linha onde o token termina (importa para strings de várias linhas)
+            Token anchor = oldTokens.get(firstToken);
+            anchorColumn = anchor.getColumn();
+            anchorLine = anchor.getLine();
+            for (int i = 0; i < anchor.lexeme.length(); i++) {
+                if (anchor.lexeme.charAt(i) == '\n') anchorLine--;
+            }
+        }
+
+        // Os erros da região reanalisada saem de novo aqui; os de fora dela são copiados do Result antigo no fim
+        Diagnostics region = Diagnostics.silent();
+        Relexer relexer = new Relexer(new Scanner(source, anchorColumn, anchorLine, previous.symbols, region),
+                oldTokens, firstToken, to + delta, delta);
+        Parser parser = new Parser(relexer, region);
+
+        List<Integer> starts = new ArrayList<>();
+        List<Stmt> units = new ArrayList<>(Arrays.asList(previous.units).subList(0, first));
+        for (int i = 0; i < first; i++) starts.add(previous.unitStarts[i]);
+
+        int reuseFrom = -1; // Primeira declaração antiga reaproveitada
+        while (!parser.isAtEnd()) {
+            int oldIndex = relexer.lastOldIndex;
+            if (oldIndex >= 0) {
+                int unit = Arrays.binarySearch(previous.unitStarts, oldIndex);
+                if (unit >= 0) {
+                    reuseFrom = unit;
+                    break;
+                }
+            }
+            starts.add(firstToken + parser.position());
+            units.add(parser.declarationOrRecover());
+        }
+
+        // Erros antigos que continuam valendo: os das declarações antes da região e, se sincronizou, os léxicos
+        // depois do token de sincronização (os tokens antigos não são re-lexados) e os sintáticos das
+        // declarações reaproveitadas (as do meio foram reanalisadas), deslocados como os tokens
+        List<Diagnostics.Diagnostic> errors = new ArrayList<>();
+        Diagnostics kept = Diagnostics.silent();
+        int syncColumn = relexer.syncIndex >= 0 ? oldTokens.get(relexer.syncIndex).getColumn() - delta : -1;
+        int reusedColumn = reuseFrom >= 0 ? oldTokens.get(previous.unitStarts[reuseFrom]).getColumn() - delta : -1;
+        for (Diagnostics.Diagnostic error : previous.diagnostics.getAll()) {
+            int keepFrom = error.phase == Diagnostics.Phase.LEXICO ? syncColumn : reusedColumn;
+            if (first > 0 && error.column < anchorColumn) {
+                errors.add(error);
+            } else if (keepFrom >= 0 && error.column >= keepFrom) {
+                int line = error.line + relexer.lineShift;
+                kept.report(error.phase, line, error.column + delta, movedMessage(error.message, error.line, line));
+            }
+        }
+        errors.addAll(region.getAll());
+        errors.addAll(kept.getAll());
+        errors.sort(Comparator.comparingInt(error -> error.column));
+        Diagnostics diagnostics = Diagnostics.silent();
+        for (Diagnostics.Diagnostic error : errors) {
+            diagnostics.report(error.phase, error.line, error.column, error.message);
+        }
+
+        // Tokens: os antigos antes da região, os re-lexados e (se sincronizou) os antigos do fim, deslocados
+        List<Token> tokens = new ArrayList<>(oldTokens.size() + relexer.fresh.size());
+        tokens.addAll(oldTokens.subList(0, firstToken));
+        tokens.addAll(relexer.fresh);
+        if (relexer.syncIndex >= 0) {
+            int shift = tokens.size() - relexer.syncIndex;
+            tokens.addAll(oldTokens.subList(relexer.syncIndex, oldTokens.size()));
+            if (reuseFrom >= 0) {
+                for (int i = reuseFrom; i < previous.units.length; i++) {
+                    starts.add(previous.unitStarts[i] + shift);
+                    units.add(previous.units[i]);
+                }
+            }
+        }
+        return new Result(source, tokens, diagnostics, previous.symbols, toArray(starts),
+                units.toArray(new Stmt[0]));
+    }
+
+    // Fonte de tokens da reanálise: entrega tokens re-lexados até reencontrar um token antigo na mesma
+    // posição (já depois da edição); daí em diante entrega os tokens antigos, que são os mesmos.
+    private static final class Relexer implements TokenSource {
+        private final Scanner scanner;
+        private final List<Token> oldTokens;
+        private final int editEnd;       // Fim da edição no fonte novo
+        private final int delta;         // Diferença de tamanho do fonte
+        final List<Token> fresh = new ArrayList<>();
+        int syncIndex = -1;              // Índice do primeiro token antigo reaproveitado
+        int lastOldIndex = -1;           // Índice antigo do último token entregue (-1 se for novo)
+        int lineShift = 0;               // Deslocamento de linha dos tokens antigos reaproveitados
+        private int candidate;           // Próximo token antigo candidato à sincronização
+
+        Relexer(Scanner scanner, List<Token> oldTokens, int firstToken, int editEnd, int delta) {
+            this.scanner = scanner;
+            this.oldTokens = oldTokens;
+            this.candidate = firstToken;
+            this.editEnd = editEnd;
+            this.delta = delta;
+        }
+
+        @Override
+        public Token nextToken() {
+            if (syncIndex >= 0) {
+                // Já sincronizado: segue pelos tokens antigos
+                if (lastOldIndex < oldTokens.size() - 1) lastOldIndex++;
+                return oldTokens.get(lastOldIndex);
+            }
+            Token token = scanner.nextToken();
+            if (token.getColumn() >= editEnd) {
+                int oldColumn = token.getColumn() - delta;
+                while (candidate < oldTokens.size() && oldTokens.get(candidate).getColumn() < oldColumn) candidate++;
+                if (candidate < oldTokens.size()) {
+                    Token old = oldTokens.get(candidate);
+                    if (old.getColumn() == oldColumn && old.type == token.type) {
+                        // Daqui em diante o texto é o mesmo: desloca os tokens antigos para as posições novas
+                        lineShift = token.getLine() - old.getLine();
+                        if (lineShift != 0 || delta != 0) Scanner.shiftTokens(oldTokens, candidate, lineShift, delta);
+                        syncIndex = candidate;
+                        lastOldIndex = candidate;
+                        return old;
+                    }
+                }
+            }
+            // O EOF novo só entra na lista uma vez, mesmo que o Parser peça de novo
+            if (fresh.isEmpty() || fresh.get(fresh.size() - 1) != token) fresh.add(token);
+            return token;
+        }
+    }
+
+    // As mensagens do Scanner e do Parser citam a linha no texto ("... na linha 3: ..."): acompanha o deslocamento
+    private static String movedMessage(String message, int line, int newLine) {
+        if (line == newLine) return message;
+        return message.replace("linha " + line + ":", "linha " + newLine + ":");
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) array[i] = list.get(i);
+        return array;
+    }
+}
@@ -1,18 +1,40 @@
 package Sintatica;
 
+import Lexica.Scanner;
 import Lexica.Token;
+import Lexica.TokenBuffer;
+import Lexica.TokenSource;
 import Lexica.TokenType;
+import Utils.Diagnostics;
+import Utils.PipelineEvents;
 
 import java.util.List;
 import java.util.ArrayList;
 
 // O Parser transforma tokens em comandos e expressões (AST)
 public class Parser {
-    private final List<Token> tokens;
-    private int current = 0;
-
+    // Os tokens são puxados sob demanda: só o anterior e o atual ficam em mãos (janela de lookahead de 1)
+    private final TokenSource tokens;
+    private final Diagnostics diagnostics; // Erros de sintaxe (compartilhado com o Scanner, se vier de um)
+    private Token previous;
+    private Token current;
+    private int position = 0; // Índice de 'current' no fluxo de tokens
+
+    // As regras devolvem a expressão pronta ou, se precisarem de uma subexpressão, chamam subParse()
+    // e devolvem null: o resto da regra fica numa continuação, chamada quando a subexpressão terminar.
     private interface ParseFnPrefix { Expr parse(Parser parser); }
     private interface ParseFnInfix { Expr parse(Parser parser, Expr left); }
+    private interface Continuation { Expr resume(Parser parser, Expr operand); }
+
+    // Uma chamada pendente de parsePrecedence na pilha explícita (substitui a recursão do Java)
+    private static final class Level {
+        final Precedence precedence;
+        Expr expr;                 // Expressão da esquerda já montada neste nível
+        Continuation continuation; // O que fazer com a subexpressão que este nível está esperando
+        Level(Precedence precedence) { this.precedence = precedence; }
+    }
+
+    private final List<Level> levels = new ArrayList<>();
 
     private static class ParseRule {
         final ParseFnPrefix prefix;
@@ -69,21 +91,80 @@ public class Parser {
         rules[TokenType.DECREMENTO.ordinal()]   = new ParseRule(Parser::decremento, Parser::decrementoInfix, Precedence.CALL);
     }
 
-    public Parser(List<Token> tokens) { this.tokens = tokens; }
+    public Parser(List<Token> tokens) { this(tokens, new Diagnostics()); }
+
+    public Parser(List<Token> tokens, Diagnostics diagnostics) { this(listSource(tokens), diagnostics); }
+
+    // Consome um TokenBuffer compacto pelo cursor dele: cada token ainda vira um objeto Token ao ser lido,
+    // mas só os que a AST guarda ficam vivos depois do parse
+    public Parser(TokenBuffer tokens) { this(tokens.cursor(), new Diagnostics()); }
+
+    // Modo streaming: recebe tokens de um Scanner (ou outra fonte) conforme o parsing avança
+    public Parser(TokenSource tokens) {
+        this(tokens, tokens instanceof Scanner ? ((Scanner) tokens).getDiagnostics() : new Diagnostics());
+    }
+
+    public Parser(TokenSource tokens, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.diagnostics = diagnostics;
+        this.current = tokens.nextToken();
+    }
+
+    // Erros registrados durante o parse (a AST devolvida por parse() só tem as declarações válidas)
+    public Diagnostics getDiagnostics() {
+        return diagnostics;
+    }
+
+    private static TokenSource listSource(List<Token> list) {
+        return new TokenSource() {
+            private int index = 0;
+            @Override
+            public Token nextToken() {
+                Token token = list.get(index);
+                if (index < list.size() - 1) index++;
+                return token;
+            }
+        };
+    }
 
     public List<Stmt> parse() {
+        // No modo streaming o tempo do léxico entra aqui: os tokens são produzidos enquanto o parse avança
+        PipelineEvents.ParseEvent event = new PipelineEvents.ParseEvent();
+        event.begin();
         List<Stmt> statements = new ArrayList<>();
         while (!isAtEnd()) {
-            try {
-                statements.add(declaration());
-            } catch (RuntimeException e) {
-                System.err.println("Erro sintático: " + e.getMessage());
-                synchronize();
-            }
+            Stmt stmt = declarationOrRecover();
+            if (stmt != null) statements.add(stmt);
+        }
+        if (event.shouldCommit()) {
+            event.script = PipelineEvents.scriptName();
+            event.tokens = position + 1; // Inclui o EOF
+            event.statements = statements.size();
+            event.errors = diagnostics.count();
+            event.commit();
         }
         return statements;
     }
 
+    // Uma declaração de nível superior; em caso de erro registra, sincroniza e retorna null.
+    // Também usada pelo IncrementalParser, que analisa uma declaração de cada vez.
+    Stmt declarationOrRecover() {
+        try {
+            return declaration();
+        } catch (Diagnostics.AbortException e) {
+            diagnostics.report(Diagnostics.Phase.SINTATICO, e);
+        } catch (RuntimeException e) {
+            // Falha inesperada dentro de uma regra: registra no token atual
+            diagnostics.report(Diagnostics.Phase.SINTATICO, peek().getLine(), peek().getColumn(), e.getMessage());
+        }
+        synchronize();
+        return null;
+    }
+
+    int position() {
+        return position;
+    }
+
     private void synchronize() {
         advance();
         while (!isAtEnd()) {
@@ -117,7 +198,7 @@ public class Parser {
         if (!check(TokenType.RIGHTPAREN)) {
             do {
                 if (parameters.size() >= 255) {
-                    error(peek(), "Não pode ter mais que 255 parâmetros.");
+                    throw error(peek(), "Não pode ter mais que 255 parâmetros.");
                 }
                 parameters.add(consume(TokenType.IDENTIFIER, "Esperava nome do parâmetro."));
             } while (match(TokenType.COMMA));
@@ -193,7 +274,7 @@ public class Parser {
                 Stmt stmt = statementBlocoOuSimples();
                 defaultCase = new Stmt.Case(null, stmt);
             } else {
-                throw new RuntimeException("Erro na linha " + peek().line + ": Esperava 'CASO' ou 'PADRAO'. (encontrado: " + peek().lexeme + ")");
+                throw error(peek(), "Esperava 'CASO' ou 'PADRAO'.");
             }
         }
         consume(TokenType.RIGHTBRACE, "Esperava '}' após ESCOLHEAI.");
@@ -227,27 +308,75 @@ public class Parser {
 
     private Expr expression() { return parsePrecedence(Precedence.ASSIGNMENT); }
 
+    // Laço de Pratt com pilha explícita: parênteses, unários e operandos da direita aninhados milhares de
+    // níveis não estouram a pilha do Java, e cada nível custa O(1) para entrar e sair.
+    // Mesma sequência de consumo de tokens (e mesma AST e erros) da versão recursiva.
     private Expr parsePrecedence(Precedence precedence) {
+        int base = levels.size();
+        levels.add(new Level(precedence));
+        try {
+            Expr value = parsePrefix();
+            while (true) {
+                if (value == null) {
+                    // Uma regra pediu subexpressão: o novo nível do topo começa pelo prefixo
+                    value = parsePrefix();
+                    continue;
+                }
+                Level level = levels.get(levels.size() - 1);
+                level.expr = value;
+                value = parseInfix(level);
+                if (value == null) continue;
+
+                // Nível terminado: entrega o resultado a quem estava esperando por ele
+                levels.remove(levels.size() - 1);
+                if (levels.size() == base) return value;
+                Level parent = levels.get(levels.size() - 1);
+                Continuation continuation = parent.continuation;
+                parent.continuation = null;
+                value = continuation.resume(this, value);
+            }
+        } finally {
+            while (levels.size() > base) levels.remove(levels.size() - 1);
+        }
+    }
+
+    private Expr parsePrefix() {
         ParseRule prefixRule = getRule(peek().type);
         if (prefixRule == null || prefixRule.prefix == null) {
             // Recuperação de erros para tokens inesperados
-            throw new RuntimeException("Esperava expressão, obtido " + peek().lexeme);
+            throw abort(peek(), "Esperava expressão, obtido " + peek().lexeme);
         }
         advance();
+        return prefixRule.prefix.parse(this);
+    }
 
-        Expr expr = prefixRule.prefix.parse(this);
-
-        while (!isAtEnd() && precedence.ordinal() <= getRule(peek().type).precedence.ordinal()) {
+    // Aplica operadores infixos enquanto a precedência permitir; null se um deles pediu subexpressão
+    private Expr parseInfix(Level level) {
+        while (!isAtEnd() && level.precedence.ordinal() <= getRule(peek().type).precedence.ordinal()) {
             ParseRule infixRule = getRule(peek().type);
             advance();
-            if (infixRule == null || infixRule.infix == null) return expr;
-            expr = infixRule.infix.parse(this, expr);
+            if (infixRule == null || infixRule.infix == null) return level.expr;
+            Expr expr = infixRule.infix.parse(this, level.expr);
+            if (expr == null) return null;
+            level.expr = expr;
         }
-        return expr;
+        return level.expr;
+    }
+
+    // Empilha a análise de uma subexpressão; 'continuation' recebe o resultado dela
+    private Expr subParse(Precedence precedence, Continuation continuation) {
+        levels.get(levels.size() - 1).continuation = continuation;
+        levels.add(new Level(precedence));
+        return null;
     }
 
-    private void error(Token token, String message) {
-        throw new RuntimeException("Erro na linha " + token.line + ": " + message + " (encontrado: " + token.lexeme + ")");
+    // Erros de sintaxe não montam stack trace: são só o sinal para voltar a declarationOrRecover()
+    private Diagnostics.AbortException error(Token token, String message) {
+        return abort(token, "Erro na linha " + token.getLine() + ": " + message + " (encontrado: " + token.lexeme + ")");
+    }
+
+    private Diagnostics.AbortException abort(Token token, String message) {
+        return new Diagnostics.AbortException(token.getLine(), token.getColumn(), message);
     }
 
     // --- Regras de Parsing ---
@@ -259,28 +388,27 @@ public class Parser {
     private static Expr binary(Parser parser, Expr left) {
         Token operator = parser.previous();
         Precedence precedence = getRule(operator.type).precedence;
-        Expr right = parser.parsePrecedence(Precedence.values()[precedence.ordinal() + 1]);
-        return new Expr.Binary(left, operator, right);
+        return parser.subParse(Precedence.values()[precedence.ordinal() + 1],
+                (p, right) -> new Expr.Binary(left, operator, right));
     }
 
     private static Expr assign(Parser parser, Expr left) {
         if (!(left instanceof Expr.Variable))
-            throw new RuntimeException("Alvo de atribuição inválido!");
+            throw parser.abort(parser.previous(), "Alvo de atribuição inválido!");
         Token name = ((Expr.Variable) left).name;
-        Expr value = parser.parsePrecedence(Precedence.ASSIGNMENT);
-        return new Expr.Assign(name, value);
+        return parser.subParse(Precedence.ASSIGNMENT, (p, value) -> new Expr.Assign(name, value));
     }
 
     private static Expr grouping(Parser parser) {
-        Expr expr = parser.expression();
-        parser.consume(TokenType.RIGHTPAREN, "Esperava ')' após expressão.");
-        return new Expr.Grouping(expr);
+        return parser.subParse(Precedence.ASSIGNMENT, (p, expr) -> {
+            p.consume(TokenType.RIGHTPAREN, "Esperava ')' após expressão.");
+            return new Expr.Grouping(expr);
+        });
     }
 
     private static Expr unary(Parser parser) {
         Token operator = parser.previous();
-        Expr right = parser.parsePrecedence(Precedence.UNARY);
-        return new Expr.Unary(operator, right);
+        return parser.subParse(Precedence.UNARY, (p, right) -> new Expr.Unary(operator, right));
     }
 
     private static Expr variable(Parser parser) {
@@ -302,10 +430,21 @@ public class Parser {
     private static Expr call(Parser parser, Expr callee) {
         List<Expr> arguments = new ArrayList<>();
         if (!parser.check(TokenType.RIGHTPAREN)) {
-            do {
-                arguments.add(parser.expression());
-            } while (parser.match(TokenType.COMMA));
+            return parser.subParse(Precedence.ASSIGNMENT, (p, argument) -> callArgument(p, callee, arguments, argument));
+        }
+        return finishCall(parser, callee, arguments);
+    }
+
+    // Um argumento terminou: pede o próximo depois da vírgula ou fecha a chamada
+    private static Expr callArgument(Parser parser, Expr callee, List<Expr> arguments, Expr argument) {
+        arguments.add(argument);
+        if (parser.match(TokenType.COMMA)) {
+            return parser.subParse(Precedence.ASSIGNMENT, (p, next) -> callArgument(p, callee, arguments, next));
         }
+        return finishCall(parser, callee, arguments);
+    }
+
+    private static Expr finishCall(Parser parser, Expr callee, List<Expr> arguments) {
         Token paren = parser.consume(TokenType.RIGHTPAREN, "Esperava ')' após os argumentos da chamada.");
         return new Expr.Call(callee, paren, arguments);
     }
@@ -326,27 +465,34 @@ public class Parser {
 
     private static Expr incrementoInfix(Parser parser, Expr left) {
         Token op = parser.previous(); // token ++
-        if (!(left instanceof Expr.Variable)) throw new RuntimeException("Operador ++ só pode ser usado após variável.");
+        if (!(left instanceof Expr.Variable)) throw parser.abort(op, "Operador ++ só pode ser usado após variável.");
         Token varToken = ((Expr.Variable) left).name;
         return new Expr.Incremento(varToken, op, false); // false = postfix
     }
 
     private static Expr decrementoInfix(Parser parser, Expr left) {
         Token op = parser.previous();
-        if (!(left instanceof Expr.Variable)) throw new RuntimeException("Operador -- só pode ser usado após variável.");
+        if (!(left instanceof Expr.Variable)) throw parser.abort(op, "Operador -- só pode ser usado após variável.");
         Token varToken = ((Expr.Variable) left).name;
         return new Expr.Decremento(varToken, op, false); // postfix
     }
 
     // --- Helpers ---
 
-    private Token previous() { return tokens.get(current - 1); }
-    private Token peek()     { return tokens.get(current); }
-    private Token advance()  { if (!isAtEnd()) current++; return previous(); }
+    private Token previous() { return previous; }
+    Token peek()             { return current; }
+    private Token advance()  {
+        if (!isAtEnd()) {
+            previous = current;
+            current = tokens.nextToken();
+            position++;
+        }
+        return previous;
+    }
 
     private Token consume(TokenType type, String message) {
         if (check(type)) return advance();
-        throw new RuntimeException("Erro na linha " + peek().line + ": " + message + " (encontrado: " + peek().lexeme + ")");
+        throw error(peek(), message);
     }
 
     private boolean check(TokenType type) {
@@ -364,7 +510,7 @@ public class Parser {
         return false;
     }
 
-    private boolean isAtEnd() {
+    boolean isAtEnd() {
         return peek().type == TokenType.EOF;
     }
 
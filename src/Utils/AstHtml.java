@@ -2,166 +2,310 @@ package Utils;
 
 import Sintatica.Expr;
 import Sintatica.Stmt;
-import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
-public class AstHtml implements Expr.Visitor<String>, Stmt.Visitor<String> {
+// Gera a árvore sintática em HTML escrevendo cada nó direto no Writer, na ordem da visita
+// (nada de montar o HTML dos filhos em Strings para depois concatenar no pai).
+// Para programas grandes dá para limitar profundidade e quantidade de nós e recolher as subárvores
+// mais fundas em <details>, que o navegador só abre quando alguém clica.
+public class AstHtml implements Expr.Visitor<Void>, Stmt.Visitor<Void> {
+
+    private final int maxDepth;      // Profundidade máxima exibida (0 = sem limite)
+    private final int maxNodes;      // Quantidade máxima de nós exibidos (0 = sem limite)
+    private final int collapseDepth; // Daqui para baixo as subárvores começam recolhidas (0 = nunca)
+
+    private Writer out;
+    private int depth = 0;
+    private int nodes = 0;
+    private boolean truncated = false;
+
+    public AstHtml() {
+        this(0, 0, 0);
+    }
+
+    public AstHtml(int maxDepth, int maxNodes, int collapseDepth) {
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.collapseDepth = collapseDepth;
+    }
 
     // --- EXPRESSÕES ---
 
     @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return tag("Binária (" + expr.operator.lexeme + ")",
-                expr.left.accept(this) + expr.right.accept(this));
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        if (open("Binária (" + expr.operator.lexeme + ")", true)) {
+            expr.left.accept(this);
+            expr.right.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return tag("Agrupamento", expr.expression.accept(this));
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        if (open("Agrupamento", true)) {
+            expr.expression.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
-        return tag("Literal: " + expr.value, "");
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        open("Literal: " + expr.value, false);
+        return null;
     }
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return tag("Unária (" + expr.operator.lexeme + ")", expr.right.accept(this));
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        if (open("Unária (" + expr.operator.lexeme + ")", true)) {
+            expr.right.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitVariableExpr(Expr.Variable expr) {
-        return tag("Variável: " + expr.name.lexeme, "");
+    public Void visitVariableExpr(Expr.Variable expr) {
+        open("Variável: " + expr.name.lexeme, false);
+        return null;
     }
 
     @Override
-    public String visitAssignExpr(Expr.Assign expr) {
-        return tag("Atribuição: " + expr.name.lexeme, expr.value.accept(this));
+    public Void visitAssignExpr(Expr.Assign expr) {
+        if (open("Atribuição: " + expr.name.lexeme, true)) {
+            expr.value.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitCallExpr(Expr.Call expr) {
-        StringBuilder args = new StringBuilder();
-        for (Expr e : expr.arguments) args.append(e.accept(this));
-        return tag("Chamada de função", expr.callee.accept(this) + args);
+    public Void visitCallExpr(Expr.Call expr) {
+        if (open("Chamada de função", true)) {
+            expr.callee.accept(this);
+            for (Expr e : expr.arguments) e.accept(this);
+            close();
+        }
+        return null;
     }
 
-    // --- NOVOS MÉTODOS (Correção do Erro) ---
-
     @Override
-    public String visitIncrementoExpr(Expr.Incremento expr) {
+    public Void visitIncrementoExpr(Expr.Incremento expr) {
         String tipo = expr.prefix ? "Pré-incremento" : "Pós-incremento";
-        return tag(tipo + ": " + expr.name.lexeme, "");
+        open(tipo + ": " + expr.name.lexeme, false);
+        return null;
     }
 
     @Override
-    public String visitDecrementoExpr(Expr.Decremento expr) {
+    public Void visitDecrementoExpr(Expr.Decremento expr) {
         String tipo = expr.prefix ? "Pré-decremento" : "Pós-decremento";
-        return tag(tipo + ": " + expr.name.lexeme, "");
+        open(tipo + ": " + expr.name.lexeme, false);
+        return null;
     }
 
     // --- COMANDOS ---
 
     @Override
-    public String visitPrintStmt(Stmt.Print stmt) {
-        return tag("Print", stmt.expression.accept(this));
+    public Void visitPrintStmt(Stmt.Print stmt) {
+        if (open("Print", true)) {
+            stmt.expression.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitVarStmt(Stmt.Var stmt) {
-        String init = stmt.initializer != null ? stmt.initializer.accept(this) : "";
-        return tag("Variável: " + stmt.name.lexeme, init);
+    public Void visitVarStmt(Stmt.Var stmt) {
+        if (open("Variável: " + stmt.name.lexeme, stmt.initializer != null)) {
+            stmt.initializer.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitFunctionStmt(Stmt.Function stmt) {
-        StringBuilder body = new StringBuilder();
-        for (Stmt s : stmt.body) body.append(s.accept(this));
-        return tag("Função: " + stmt.name.lexeme, body.toString());
+    public Void visitFunctionStmt(Stmt.Function stmt) {
+        if (open("Função: " + stmt.name.lexeme, !stmt.body.isEmpty())) {
+            for (Stmt s : stmt.body) s.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitReturnStmt(Stmt.Return stmt) {
-        return tag("Return", stmt.value != null ? stmt.value.accept(this) : "");
+    public Void visitReturnStmt(Stmt.Return stmt) {
+        if (open("Return", stmt.value != null)) {
+            stmt.value.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitIfStmt(Stmt.If stmt) {
-        String cond = stmt.condition.accept(this);
-        String thenB = stmt.thenBranch.accept(this);
-        String elseB = stmt.elseBranch != null ? stmt.elseBranch.accept(this) : "";
-        return tag("If", cond + thenB + elseB);
+    public Void visitIfStmt(Stmt.If stmt) {
+        if (open("If", true)) {
+            stmt.condition.accept(this);
+            stmt.thenBranch.accept(this);
+            if (stmt.elseBranch != null) stmt.elseBranch.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitBlockStmt(Stmt.Block stmt) {
-        StringBuilder sb = new StringBuilder();
-        for (Stmt s : stmt.statements) sb.append(s.accept(this));
-        return tag("Bloco", sb.toString());
+    public Void visitBlockStmt(Stmt.Block stmt) {
+        if (open("Bloco", !stmt.statements.isEmpty())) {
+            for (Stmt s : stmt.statements) s.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitExpressionStmt(Stmt.Expression stmt) {
-        return tag("Expressão", stmt.expr.accept(this));
+    public Void visitExpressionStmt(Stmt.Expression stmt) {
+        if (open("Expressão", true)) {
+            stmt.expr.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitWhileStmt(Stmt.While stmt) {
-        return tag("While", stmt.condition.accept(this) + stmt.body.accept(this));
+    public Void visitWhileStmt(Stmt.While stmt) {
+        if (open("While", true)) {
+            stmt.condition.accept(this);
+            stmt.body.accept(this);
+            close();
+        }
+        return null;
     }
 
     @Override
-    public String visitBreakStmt(Stmt.Break stmt) {
-        return tag("Break", "");
+    public Void visitBreakStmt(Stmt.Break stmt) {
+        open("Break", false);
+        return null;
     }
 
     @Override
-    public String visitSwitchStmt(Stmt.Switch stmt) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(stmt.expr.accept(this));
-        if (stmt.cases != null)
-            for (Stmt.Case c : stmt.cases) sb.append(tag("Case", c.stmt.accept(this)));
-        if (stmt.defaultCase != null)
-            sb.append(tag("Default", stmt.defaultCase.stmt.accept(this)));
-        return tag("Switch", sb.toString());
+    public Void visitSwitchStmt(Stmt.Switch stmt) {
+        if (open("Switch", true)) {
+            stmt.expr.accept(this);
+            if (stmt.cases != null) {
+                for (Stmt.Case c : stmt.cases) caseNode("Case", c);
+            }
+            if (stmt.defaultCase != null) caseNode("Default", stmt.defaultCase);
+            close();
+        }
+        return null;
+    }
+
+    private void caseNode(String title, Stmt.Case c) {
+        if (open(title, true)) {
+            c.stmt.accept(this);
+            close();
+        }
     }
 
     @Override
-    public String visitInputStmt(Stmt.Input stmt) {
-        return tag("Input: " + stmt.name.lexeme, "");
+    public Void visitInputStmt(Stmt.Input stmt) {
+        open("Input: " + stmt.name.lexeme, false);
+        return null;
     }
 
     // --- Helpers ---
 
-    // Helper para HTML indentado básico
-    private String tag(String title, String children) {
-        return "<li><b>" + title + "</b>" +
-                (children.isEmpty() ? "" : "<ul>" + children + "</ul>") +
-                "</li>";
+    // Escreve a abertura do nó. Retorna true se os filhos devem ser visitados (e close() chamado depois);
+    // folhas, nós além da profundidade máxima e nós além do limite total retornam false.
+    private boolean open(String title, boolean hasChildren) {
+        if (maxNodes > 0 && nodes >= maxNodes) {
+            truncated = true;
+            return false;
+        }
+        nodes++;
+        if (!hasChildren) {
+            write("<li><b>" + escape(title) + "</b></li>");
+            return false;
+        }
+        if (maxDepth > 0 && depth >= maxDepth) {
+            write("<li><b>" + escape(title) + "</b> <i>(subárvore omitida)</i></li>");
+            return false;
+        }
+        if (collapsed()) {
+            write("<li><details><summary><b>" + escape(title) + "</b></summary><ul>");
+        } else {
+            write("<li><b>" + escape(title) + "</b><ul>");
+        }
+        depth++;
+        return true;
     }
 
-    // Gera HTML simples, indentado
-    public void gerarHtml(List<Stmt> statements, String caminhoArquivo) {
-        StringBuilder html = new StringBuilder();
-        html.append("<html><head><meta charset='UTF-8'><style>");
-        html.append("body{font-family:Arial,sans-serif;background:#FFF;} ul{margin-left:30px;}");
-        html.append("li{margin-bottom:6px;font-size:16px;} b{font-weight:600;color:#222;}");
-        html.append("</style></head>");
-        html.append("<body><h2>Árvore Sintática (AST)</h2><ul>");
+    private void close() {
+        depth--;
+        write(collapsed() ? "</ul></details></li>" : "</ul></li>");
+    }
+
+    private boolean collapsed() {
+        return collapseDepth > 0 && depth >= collapseDepth;
+    }
 
-        for (Stmt s : statements) {
-            html.append(s.accept(this));
+    private void write(String text) {
+        try {
+            out.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+    }
+
+    private static String escape(String text) {
+        if (text.indexOf('<') < 0 && text.indexOf('>') < 0 && text.indexOf('&') < 0) return text;
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+
+    // Escreve o documento inteiro no Writer (quem chama fecha o Writer)
+    public void write(List<Stmt> statements, Writer writer) throws IOException {
+        this.out = writer;
+        this.depth = 0;
+        this.nodes = 0;
+        this.truncated = false;
+        try {
+            writer.write("<html><head><meta charset='UTF-8'><style>");
+            writer.write("body{font-family:Arial,sans-serif;background:#FFF;} ul{margin-left:30px;}");
+            writer.write("li{margin-bottom:6px;font-size:16px;} b{font-weight:600;color:#222;}");
+            writer.write("summary{cursor:pointer;}");
+            writer.write("</style></head>");
+            writer.write("<body><h2>Árvore Sintática (AST)</h2><ul>");
 
-        html.append("</ul></body></html>");
+            for (Stmt s : statements) {
+                s.accept(this);
+            }
+            if (truncated) {
+                writer.write("<li><i>(limite de " + maxNodes + " nós atingido; o restante foi omitido)</i></li>");
+            }
 
-        try (FileWriter file = new FileWriter(caminhoArquivo)) {
-            file.write(html.toString());
+            writer.write("</ul></body></html>");
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.out = null;
+        }
+    }
+
+    // Gera HTML simples, indentado
+    public void gerarHtml(List<Stmt> statements, String caminhoArquivo) {
+        try (Writer file = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(caminhoArquivo), StandardCharsets.UTF_8), 1 << 16)) {
+            write(statements, file);
             System.out.println("AST inicial (indentada) gerada em: " + caminhoArquivo);
         } catch (IOException e) {
             System.err.println("Erro ao salvar HTML: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,101 @@
+package Utils;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Coletor de erros compartilhado por Scanner, Parser e Compiler. Cada erro vira um registro
+// (fase, linha, posição, mensagem) que fica disponível depois da análise, em vez de só ir para o System.err.
+// Por padrão os erros continuam sendo ecoados no System.err, no mesmo formato de antes.
+public class Diagnostics {
+
+    public enum Phase {
+        LEXICO(""),                          // As mensagens do Scanner já dizem o que são
+        SINTATICO("Erro sintático: "),
+        COMPILACAO("Erro de compilação: ");
+
+        final String prefix;
+        Phase(String prefix) { this.prefix = prefix; }
+    }
+
+    public static final class Diagnostic {
+        public final Phase phase;
+        public final int line;
+        public final int column; // Posição no fonte, como Token.column
+        public final String message;
+
+        Diagnostic(Phase phase, int line, int column, String message) {
+            this.phase = phase;
+            this.line = line;
+            this.column = column;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return phase.prefix + message;
+        }
+    }
+
+    // Exceção barata (sem stack trace) para abandonar a construção atual; quem a captura registra o erro
+    public static class AbortException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public final int line;
+        public final int column;
+
+        public AbortException(int line, int column, String message) {
+            super(message, null, false, false);
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    private final List<Diagnostic> entries = new ArrayList<>();
+    private final PrintStream echo; // null = não imprime nada
+
+    public Diagnostics() {
+        this(System.err);
+    }
+
+    public Diagnostics(PrintStream echo) {
+        this.echo = echo;
+    }
+
+    // Só registra, sem imprimir (uso programático, editor, testes)
+    public static Diagnostics silent() {
+        return new Diagnostics(null);
+    }
+
+    // O léxico e a compilação paralelos registram de várias threads
+    public synchronized void report(Phase phase, int line, int column, String message) {
+        add(new Diagnostic(phase, line, column, message));
+    }
+
+    public void report(Phase phase, AbortException error) {
+        report(phase, error.line, error.column, error.getMessage());
+    }
+
+    // Copia os erros de outro coletor (ex: trechos do léxico paralelo, emendados na ordem do fonte)
+    public synchronized void addAll(Diagnostics other) {
+        for (Diagnostic diagnostic : other.getAll()) add(diagnostic);
+    }
+
+    private void add(Diagnostic diagnostic) {
+        entries.add(diagnostic);
+        if (echo != null) echo.println(diagnostic);
+    }
+
+    public synchronized boolean hasErrors() {
+        return !entries.isEmpty();
+    }
+
+    public synchronized int count() {
+        return entries.size();
+    }
+
+    public synchronized List<Diagnostic> getAll() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+}
@@ -0,0 +1,161 @@
+package Utils;
+
+import java.time.Duration;
+
+// Orçamento de uma execução: combustível (iterações de laço + chamadas de função), prazo de relógio
+// e cota de memória. Vale para a VM e para o Interpreter, que gastam uma unidade a cada volta de
+// VOLTAINFINITA (no fim do corpo, antes de voltar à condição) e a cada chamada. Sem limite configurado
+// o custo por ponto de verificação é um decremento e uma comparação que nunca falha.
+// A memória é contada por estimativa (texto concatenado ou lido, números criados), não medida no heap:
+// o mesmo programa estoura a cota sempre no mesmo ponto.
+public final class ExecutionBudget {
+
+    public static final ExecutionBudget UNLIMITED = new ExecutionBudget(0, 0, 0);
+
+    // De quantas em quantas unidades o prazo e a cota são conferidos (System.nanoTime() a cada volta custaria caro)
+    private static final long CHECK_SLICE = 4096;
+
+    // Custo estimado de um Integer/Double criado por uma operação (cabeçalho + valor)
+    public static final long BOXED_NUMBER_BYTES = 16;
+
+    public final long fuel;          // 0 = sem limite
+    public final long timeoutNanos;  // 0 = sem limite
+    public final long maxAllocatedBytes; // 0 = sem limite
+
+    private ExecutionBudget(long fuel, long timeoutNanos, long maxAllocatedBytes) {
+        this.fuel = fuel;
+        this.timeoutNanos = timeoutNanos;
+        this.maxAllocatedBytes = maxAllocatedBytes;
+    }
+
+    public static ExecutionBudget of(long fuel, Duration timeout) {
+        return of(fuel, timeout, 0);
+    }
+
+    public static ExecutionBudget of(long fuel, Duration timeout, long maxAllocatedBytes) {
+        if (fuel < 0) throw new IllegalArgumentException("Combustível negativo: " + fuel);
+        long nanos = timeout == null ? 0 : timeout.toNanos();
+        if (nanos < 0) throw new IllegalArgumentException("Prazo negativo: " + timeout);
+        if (maxAllocatedBytes < 0) throw new IllegalArgumentException("Cota de memória negativa: " + maxAllocatedBytes);
+        if (fuel == 0 && nanos == 0 && maxAllocatedBytes == 0) return UNLIMITED;
+        return new ExecutionBudget(fuel, nanos, maxAllocatedBytes);
+    }
+
+    public static ExecutionBudget allocation(long maxAllocatedBytes) {
+        return of(0, null, maxAllocatedBytes);
+    }
+
+    public static ExecutionBudget fuel(long fuel) {
+        return of(fuel, null);
+    }
+
+    public static ExecutionBudget timeout(Duration timeout) {
+        return of(0, timeout);
+    }
+
+    public boolean isUnlimited() {
+        return fuel == 0 && timeoutNanos == 0 && maxAllocatedBytes == 0;
+    }
+
+    // Estado de consumo de uma execução; cada VM/Interpreter tem o seu e o reinicia com start()
+    public static final class Meter {
+        // Unidades que ainda podem ser gastas antes de passar por refill(); o caminho rápido só mexe aqui
+        public long tick = Long.MAX_VALUE;
+
+        // Bytes estimados alocados pela execução; as operações só somam aqui, a cota é conferida
+        // em refill() e, antes de textos grandes, em allocate()
+        public long allocated;
+
+        private long remaining;     // Combustível além do que já está em tick (Long.MAX_VALUE = sem limite)
+        private long granted;       // Total já liberado para tick (used() = granted - o que sobrou em tick)
+        private long deadline;      // Em System.nanoTime()
+        private boolean hasDeadline;
+        private long allocationLimit;
+        private boolean sliced;     // Prazo ou cota configurados: o tick é liberado em fatias de CHECK_SLICE
+        private long limit;         // Para a mensagem de erro
+        private long timeoutNanos;
+        private String message;
+
+        public void start(ExecutionBudget budget) {
+            this.message = null;
+            this.limit = budget.fuel;
+            this.timeoutNanos = budget.timeoutNanos;
+            this.hasDeadline = budget.timeoutNanos > 0;
+            this.deadline = hasDeadline ? System.nanoTime() + budget.timeoutNanos : 0;
+            this.allocated = 0;
+            this.allocationLimit = budget.maxAllocatedBytes > 0 ? budget.maxAllocatedBytes : Long.MAX_VALUE;
+            this.sliced = hasDeadline || budget.maxAllocatedBytes > 0;
+            this.remaining = budget.fuel > 0 ? budget.fuel : Long.MAX_VALUE;
+            this.granted = 0;
+            if (budget.isUnlimited()) {
+                this.tick = Long.MAX_VALUE;
+                this.granted = Long.MAX_VALUE;
+                this.remaining = 0;
+            } else {
+                slice();
+            }
+        }
+
+        // Gasta uma unidade; false quando o orçamento acabou (motivo em message())
+        public boolean consume() {
+            return --tick >= 0 || refill();
+        }
+
+        // Registra uma alocação que pode ser grande (texto) antes de fazê-la; false se estourar a cota
+        public boolean allocate(long bytes) {
+            allocated += bytes;
+            return allocated <= allocationLimit || overQuota();
+        }
+
+        private boolean overQuota() {
+            if (message == null) message = "Limite de memória esgotado (" + allocationLimit + " bytes).";
+            granted -= Math.max(tick, 0); // O que sobrou da fatia não foi gasto
+            tick = 0;
+            return false;
+        }
+
+        // Caminho lento: o tick zerou. Confere prazo e cota e libera mais uma fatia do combustível.
+        public boolean refill() {
+            if (message != null) return false;
+            if (allocated > allocationLimit) return overQuota();
+            if (hasDeadline && System.nanoTime() - deadline >= 0) {
+                message = "Tempo limite de execução esgotado (" + (timeoutNanos / 1_000_000) + " ms).";
+                tick = 0;
+                return false;
+            }
+            if (remaining == 0) {
+                message = "Limite de execução esgotado (" + limit + " passos).";
+                tick = 0;
+                return false;
+            }
+            slice();
+            tick--; // A unidade que disparou o refill
+            return true;
+        }
+
+        private void slice() {
+            long next = sliced ? Math.min(remaining, CHECK_SLICE) : remaining;
+            if (remaining != Long.MAX_VALUE) remaining -= next;
+            granted += next;
+            tick = next;
+        }
+
+        // Unidades gastas desde start() (voltas de laço + chamadas), também sem orçamento
+        public long used() {
+            return granted - Math.max(tick, 0);
+        }
+
+        public String message() {
+            return message;
+        }
+    }
+
+    // Erro de execução por orçamento esgotado (o Interpreter o propaga até interpret())
+    public static class ExhaustedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ExhaustedException(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
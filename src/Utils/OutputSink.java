@@ -0,0 +1,398 @@
+package Utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+// Saída do ESCREVEAI nos dois motores. Os valores são escritos direto num buffer de bytes (números sem
+// passar por String), que começa pequeno e cresce até a capacidade conforme a saída pede, e só desce para o destino quando enche ou num ponto de descarga explícito:
+// antes do LEAI, antes de uma mensagem de erro e no fim da execução. Com flushOnNewline cada linha desce
+// na hora (o padrão quando o stdout é um terminal, para quem está olhando ver a saída aos poucos).
+// O destino pode ser um OutputStream (stdout, arquivo, memória) ou um Writer (o ScriptContext do
+// ScriptEngine, por exemplo). Como um PrintWriter, não lança IOException: o erro fica em checkError().
+// Não é thread-safe: cada execução escreve no seu.
+public final class OutputSink extends Writer {
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final int WRITER_CAPACITY = 8 * 1024; // Destino em memória: descarregar custa pouco
+    private static final int INITIAL_BUFFER = 512;      // Quem escreve pouco nunca chega a alocar 64 KB
+
+    private static final byte[] NEWLINE = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final String ASCII = "\t\n\r !\"#$%&'()*+,-./0123456789:;<=>?@ABCDEFGHIJKLMNOPQRSTUVWXYZ" +
+            "[\\]^_`abcdefghijklmnopqrstuvwxyz{|}~";
+
+    // Potências de 10 exatas em double (até 10^22 são representáveis sem erro)
+    private static final double[] POW10 = new double[16];
+    private static final long[] LONG_POW10 = new long[16];
+    static {
+        long p = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            LONG_POW10[i] = p;
+            POW10[i] = p;
+            p *= 10;
+        }
+    }
+
+    private final int capacity;            // Tamanho máximo do buffer
+    private byte[] buffer;                 // Alocado na primeira escrita, cresce até 'capacity'
+    private int count;
+    private final byte[] digits = new byte[20];
+
+    private OutputStream stream;           // Destino em bytes...
+    private Charset charset = StandardCharsets.UTF_8;
+    private boolean utf8 = true;
+    private boolean ascii = true;          // O charset codifica ASCII em um byte igual
+    private Writer writer;                 // ...ou em caracteres (os bytes são UTF-8 e decodificados na descarga)
+    private CharsetDecoder decoder;
+    private CharBuffer chars;
+
+    private boolean flushOnNewline;
+    private boolean trouble;
+
+    public OutputSink(OutputStream out, Charset charset, int capacity, boolean flushOnNewline) {
+        this.capacity = Math.max(capacity, 64);
+        this.flushOnNewline = flushOnNewline;
+        redirect(out, charset);
+    }
+
+    public OutputSink(OutputStream out, Charset charset) {
+        this(out, charset, DEFAULT_CAPACITY, false);
+    }
+
+    public OutputSink(Writer out, int capacity, boolean flushOnNewline) {
+        this.capacity = Math.max(capacity, 64);
+        this.flushOnNewline = flushOnNewline;
+        redirect(out);
+    }
+
+    public OutputSink(Writer out) {
+        this(out, WRITER_CAPACITY, false);
+    }
+
+    // Canal novo para o System.out atual, um por execução (o ExecutionContext ou o Interpreter guarda o seu;
+    // nada fica preso à thread, então uma thread virtual por requisição não deixa um buffer para trás).
+    // Descarrega linha a linha se houver um terminal.
+    public static OutputSink stdout() {
+        PrintStream out = System.out;
+        return new OutputSink(out, out.charset(), DEFAULT_CAPACITY, System.console() != null);
+    }
+
+    // Saída para um arquivo (criado ou truncado), em UTF-8; close() fecha o arquivo
+    public static OutputSink toFile(Path path) throws IOException {
+        return new OutputSink(Files.newOutputStream(path), StandardCharsets.UTF_8);
+    }
+
+    // Saída guardada em memória, lida com contents()
+    public static OutputSink inMemory() {
+        return new OutputSink(new ByteArrayOutputStream(), StandardCharsets.UTF_8);
+    }
+
+    // Texto escrito até agora num canal de inMemory()
+    public String contents() {
+        if (!(stream instanceof ByteArrayOutputStream)) {
+            throw new IllegalStateException("contents() só vale para um canal criado com inMemory()");
+        }
+        drain();
+        return ((ByteArrayOutputStream) stream).toString(charset);
+    }
+
+    // Troca o destino (o que ainda está no buffer é descartado: descarregue antes)
+    public void redirect(OutputStream out, Charset charset) {
+        this.stream = out;
+        this.writer = null;
+        this.charset = charset;
+        this.utf8 = charset.equals(StandardCharsets.UTF_8);
+        this.ascii = utf8 || Arrays.equals(ASCII.getBytes(charset), ASCII.getBytes(StandardCharsets.US_ASCII));
+        this.count = 0;
+        this.trouble = false;
+    }
+
+    // Troca o destino por um Writer; null solta o destino anterior (contexto devolvido ao pool)
+    public void redirect(Writer out) {
+        this.writer = out;
+        this.stream = null;
+        this.charset = StandardCharsets.UTF_8;
+        this.utf8 = true;
+        this.ascii = true;
+        this.count = 0;
+        this.trouble = false;
+    }
+
+    public void setFlushOnNewline(boolean flushOnNewline) {
+        this.flushOnNewline = flushOnNewline;
+    }
+
+    public boolean isFlushOnNewline() {
+        return flushOnNewline;
+    }
+
+    // true se alguma escrita no destino falhou (como PrintWriter.checkError)
+    public boolean checkError() {
+        return trouble;
+    }
+
+    // --- Valores da linguagem ---
+
+    // Um valor como o ESCREVEAI mostra: nulo, inteiros e quebrados sem ".0", ISSOAI/MENTIRA como true/false
+    public void writeValue(Object value) {
+        if (value == null) {
+            append("nulo");
+        } else if (value instanceof Integer) {
+            writeLong((Integer) value);
+        } else if (value instanceof Double) {
+            writeDouble((Double) value);
+        } else if (value instanceof CharSequence) {
+            append((CharSequence) value); // Uma Rope é copiada direto, sem achatar
+        } else {
+            append(value.toString());
+        }
+    }
+
+    public void writeLine(Object value) {
+        writeValue(value);
+        newLine();
+    }
+
+    public void newLine() {
+        if (!ascii) {
+            append(System.lineSeparator());
+        } else {
+            room(NEWLINE.length);
+            for (byte b : NEWLINE) buffer[count++] = b;
+        }
+        if (flushOnNewline) flush();
+    }
+
+    public void writeLong(long value) {
+        if (!ascii) {
+            append(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            put('-');
+            if (value == Long.MIN_VALUE) {
+                append("9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        int n = digits.length;
+        do {
+            digits[--n] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        int length = digits.length - n;
+        room(length);
+        System.arraycopy(digits, n, buffer, count, length);
+        count += length;
+    }
+
+    // Mesmo texto de Double.toString (o menor decimal que volta ao mesmo double), sem o ".0" dos inteiros.
+    // Na faixa em que o Double.toString não usa notação científica (10^-3 <= |d| < 10^7) o decimal é achado
+    // aqui, sem alocar: o menor k tal que m = round(|d| * 10^k) dividido por 10^k volta a |d|. Enquanto
+    // m < 10^15 o produto erra menos de 0.11 e o intervalo de arredondamento de d mede menos de 0.22 em
+    // unidades de 10^-k, então round() acha o único candidato e a divisão (exata nos dois operandos,
+    // arredondada corretamente) confirma. Fora disso (mais de 15 dígitos, notação científica) usa toString.
+    public void writeDouble(double value) {
+        double abs = Math.abs(value);
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        if (abs == 0) {
+            append(negative ? "-0" : "0");
+            return;
+        }
+        if (abs >= 1e-3 && abs < 1e7) {
+            if (abs == Math.rint(abs)) {
+                if (negative) put('-');
+                writeLong((long) abs);
+                return;
+            }
+            for (int k = 1; k < POW10.length && abs * POW10[k] < 1e15; k++) {
+                long m = Math.round(abs * POW10[k]);
+                if (m / POW10[k] == abs) {
+                    if (negative) put('-');
+                    writeLong(m / LONG_POW10[k]);
+                    put('.');
+                    long fraction = m % LONG_POW10[k];
+                    for (int zeros = k - 1; zeros > 0 && fraction < LONG_POW10[zeros]; zeros--) put('0');
+                    writeLong(fraction);
+                    return;
+                }
+            }
+        }
+        String text = Double.toString(value);
+        append(text, 0, text.endsWith(".0") ? text.length() - 2 : text.length());
+    }
+
+    // --- Writer ---
+
+    @Override
+    public void write(int c) {
+        put((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) {
+        append(CharBuffer.wrap(cbuf), off, off + len);
+    }
+
+    @Override
+    public void write(char[] cbuf) {
+        write(cbuf, 0, cbuf.length);
+    }
+
+    @Override
+    public void write(String str) {
+        append(str, 0, str.length());
+    }
+
+    @Override
+    public void write(String str, int off, int len) {
+        append(str, off, off + len);
+    }
+
+    @Override
+    public OutputSink append(CharSequence csq) {
+        return append(csq, 0, csq.length());
+    }
+
+    @Override
+    public OutputSink append(CharSequence csq, int start, int end) {
+        room(0);
+        byte[] buf = buffer;
+        for (int i = start; i < end; i++) {
+            char c = csq.charAt(i);
+            if (c < 0x80 && ascii && count < buf.length) {
+                buf[count++] = (byte) c;
+            } else {
+                i = encode(csq, i, end);
+                buf = buffer;
+            }
+        }
+        return this;
+    }
+
+    @Override
+    public OutputSink append(char c) {
+        put(c);
+        return this;
+    }
+
+    // Manda o buffer para o destino e descarrega o destino
+    @Override
+    public void flush() {
+        drain();
+        try {
+            if (stream != null) stream.flush();
+            else if (writer != null) writer.flush();
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        try {
+            if (stream != null) stream.close();
+            else if (writer != null) writer.close();
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+
+    // --- Internos ---
+
+    // Garante espaço para mais 'needed' bytes: cresce o buffer enquanto não chega à capacidade, depois descarrega
+    private void room(int needed) {
+        if (buffer == null) buffer = new byte[Math.min(capacity, INITIAL_BUFFER)];
+        if (count + needed <= buffer.length) return;
+        if (buffer.length < capacity) {
+            buffer = Arrays.copyOf(buffer, Math.min(capacity, Math.max(buffer.length * 2, count + needed)));
+            if (count + needed <= buffer.length) return;
+        }
+        drain();
+    }
+
+    private void put(char c) {
+        if (c < 0x80 && ascii) {
+            room(1);
+            buffer[count++] = (byte) c;
+        } else {
+            encode(String.valueOf(c), 0, 1);
+        }
+    }
+
+    // Codifica o caractere (ou par de surrogates) na posição i; retorna o índice do último consumido
+    private int encode(CharSequence csq, int i, int end) {
+        room(4);
+        char c = csq.charAt(i);
+        boolean pair = Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1));
+        if (!utf8) {
+            byte[] bytes = csq.subSequence(i, pair ? i + 2 : i + 1).toString().getBytes(charset);
+            room(bytes.length);
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+            return pair ? i + 1 : i;
+        }
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (pair) {
+            int cp = Character.toCodePoint(c, csq.charAt(i + 1));
+            buffer[count++] = (byte) (0xF0 | (cp >> 18));
+            buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            buffer[count++] = '?'; // Surrogate sozinho: o mesmo que o codificador do JDK faz
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    // Manda o buffer para o destino, sem descarregar o destino
+    private void drain() {
+        if (count == 0) return;
+        write(buffer, 0, count);
+        count = 0;
+    }
+
+    private void write(byte[] bytes, int off, int len) {
+        try {
+            if (stream != null) {
+                stream.write(bytes, off, len);
+            } else if (writer != null) {
+                // Só se descarrega entre caracteres, então os bytes sempre formam UTF-8 completo
+                if (decoder == null) {
+                    decoder = StandardCharsets.UTF_8.newDecoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                    chars = CharBuffer.allocate(capacity);
+                }
+                decoder.reset();
+                chars.clear();
+                decoder.decode(ByteBuffer.wrap(bytes, off, len), chars, true);
+                writer.write(chars.array(), 0, chars.position());
+            }
+        } catch (IOException e) {
+            trouble = true;
+        }
+    }
+}
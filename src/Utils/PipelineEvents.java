@@ -0,0 +1,127 @@
+package Utils;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Eventos do Java Flight Recorder para cada etapa do pipeline (léxico, sintático, compilação, execução).
+// Desligados (o padrão), begin()/shouldCommit() não fazem nada e o JIT elimina o objeto do evento;
+// os campos só são preenchidos dentro do if (event.shouldCommit()).
+// Para gravar: java -XX:StartFlightRecording=filename=cpqp.jfr ... e os eventos ficam na categoria "Codes Pqp".
+public final class PipelineEvents {
+
+    // Nome do script sendo processado nesta thread (o arquivo, para a linha de comando; o FILENAME do ScriptContext, para o javax.script)
+    private static final ThreadLocal<String> SCRIPT = new ThreadLocal<>();
+
+    private PipelineEvents() {
+    }
+
+    // Marca o script atual da thread e devolve o anterior, para restaurar com exitScript()
+    public static String enterScript(String name) {
+        String previous = SCRIPT.get();
+        SCRIPT.set(name);
+        return previous;
+    }
+
+    public static void exitScript(String previous) {
+        if (previous == null) SCRIPT.remove();
+        else SCRIPT.set(previous);
+    }
+
+    public static String scriptName() {
+        return SCRIPT.get();
+    }
+
+    @Name("cpqp.Scan")
+    @Label("Análise Léxica")
+    @Category("Codes Pqp")
+    @Description("Scanner.scanTokens/scanBuffer/scanTokensParallel (no modo streaming o léxico fica dentro do evento de análise sintática)")
+    @StackTrace(false)
+    public static final class ScanEvent extends Event {
+        @Label("Script")
+        public String script;
+
+        @Label("Modo")
+        public String mode;
+
+        @Label("Tokens")
+        public int tokens;
+    }
+
+    @Name("cpqp.Parse")
+    @Label("Análise Sintática")
+    @Category("Codes Pqp")
+    @StackTrace(false)
+    public static final class ParseEvent extends Event {
+        @Label("Script")
+        public String script;
+
+        @Label("Tokens")
+        public int tokens;
+
+        @Label("Statements")
+        public int statements;
+
+        @Label("Erros")
+        public int errors;
+    }
+
+    @Name("cpqp.Compile")
+    @Label("Compilação")
+    @Category("Codes Pqp")
+    @StackTrace(false)
+    public static final class CompileEvent extends Event {
+        @Label("Script")
+        public String script;
+
+        @Label("Statements")
+        public int statements;
+
+        @Label("Tamanho do Chunk")
+        @Description("Instruções do chunk principal (as funções têm chunks próprios)")
+        public int chunkSize;
+
+        @Label("Constantes")
+        public int constants;
+
+        @Label("Sucesso")
+        public boolean success;
+    }
+
+    @Name("cpqp.Execute")
+    @Label("Execução")
+    @Category("Codes Pqp")
+    @StackTrace(false)
+    public static final class ExecutionEvent extends Event {
+        @Label("Script")
+        public String script;
+
+        @Label("Motor")
+        public String engine;
+
+        @Label("Chunk")
+        @Description("Nome do chunk executado: <script> ou a função chamada por VM.invoke (só na VM)")
+        public String chunk;
+
+        @Label("Tamanho do Chunk")
+        public int chunkSize;
+
+        @Label("Statements")
+        public int statements;
+
+        @Label("Passos")
+        @Description("Voltas de laço + chamadas de função, as mesmas unidades do --fuel")
+        public long steps;
+
+        @Label("Alocação Estimada")
+        @DataAmount
+        public long allocatedBytes;
+
+        @Label("Sucesso")
+        public boolean success;
+    }
+}
@@ -0,0 +1,99 @@
+package Utils;
+
+// String de tempo de execução que adia a concatenação (usada pelo '+' do Interpreter e da VM).
+// Várias Ropes podem compartilhar o mesmo StringBuilder: a que está na "ponta" (length == buffer.length())
+// anexa direto no buffer, as outras copiam antes. Assim um laço "s = s + x" fica linear em vez de quadrático.
+// O texto só é achatado (toString) quando for impresso, comparado ou usado em hash.
+public final class Rope implements CharSequence {
+    private final StringBuilder buffer; // Buffer compartilhado com as Ropes derivadas
+    private final int length;           // Quantos caracteres do buffer pertencem a esta Rope
+    private String flat;                // Cache do texto achatado
+
+    private Rope(StringBuilder buffer, int length) {
+        this.buffer = buffer;
+        this.length = length;
+    }
+
+    // Concatena dois textos; se 'left' for a ponta de uma Rope, reaproveita o buffer dela
+    public static Rope concat(CharSequence left, CharSequence right) {
+        if (left instanceof Rope) {
+            Rope rope = (Rope) left;
+            if (rope.length == rope.buffer.length()) {
+                appendTo(rope.buffer, right);
+                return new Rope(rope.buffer, rope.buffer.length());
+            }
+        }
+        int total = left.length() + right.length();
+        StringBuilder sb = new StringBuilder(total + (total >> 1) + 16);
+        appendTo(sb, left);
+        appendTo(sb, right);
+        return new Rope(sb, sb.length());
+    }
+
+    // Estimativa dos bytes que concat(left, right) vai alocar (chamar antes do concat): só o trecho anexado
+    // quando 'left' é a ponta do buffer, o texto inteiro com a folga do StringBuilder quando precisa copiar
+    public static long concatBytes(CharSequence left, CharSequence right) {
+        long rope = 24;
+        if (left instanceof Rope) {
+            Rope tip = (Rope) left;
+            // O buffer dobra quando enche: em média cada caractere anexado custa mais dois copiados
+            if (tip.length == tip.buffer.length()) return rope + 6L * right.length();
+        }
+        long total = (long) left.length() + right.length();
+        return rope + 16 + 2 * (total + (total >> 1) + 16);
+    }
+
+    // Strings da linguagem podem ser String (literais, entrada) ou Rope (resultado de '+')
+    public static boolean isString(Object value) {
+        return value instanceof String || value instanceof Rope;
+    }
+
+    // Igualdade de texto entre String e Rope, em qualquer combinação. É por aqui que o '==' da linguagem
+    // compara textos: equals fica só entre Ropes para continuar simétrico com String.equals
+    public static boolean textEquals(Object a, Object b) {
+        return a.toString().equals(b.toString());
+    }
+
+    // Uma Rope pode ser anexada ao próprio buffer (s + s): copia só o prefixo que lhe pertence
+    private static void appendTo(StringBuilder sb, CharSequence text) {
+        if (text instanceof Rope) {
+            Rope other = (Rope) text;
+            sb.append(other.buffer, 0, other.length);
+        } else {
+            sb.append(text);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+        return buffer.charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        if (flat == null) flat = buffer.substring(0, length);
+        return flat;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        return o instanceof Rope && textEquals(this, o);
+    }
+
+    @Override
+    public int hashCode() {
+        return toString().hashCode();
+    }
+}